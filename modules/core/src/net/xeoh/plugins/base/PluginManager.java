@@ -28,12 +28,15 @@
 package net.xeoh.plugins.base;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.Iterator;
 
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import net.xeoh.plugins.base.annotations.injections.InjectPlugin;
 import net.xeoh.plugins.base.impl.PluginManagerFactory;
 import net.xeoh.plugins.base.options.AddPluginsFromOption;
 import net.xeoh.plugins.base.options.GetPluginOption;
+import net.xeoh.plugins.base.options.getplugin.OptionPluginSelector;
 import net.xeoh.plugins.base.util.JSPFProperties;
 import net.xeoh.plugins.base.util.PluginManagerUtil;
 import net.xeoh.plugins.base.util.uri.ClassURI;
@@ -70,10 +73,21 @@ import net.xeoh.plugins.informationbroker.InformationBroker;
  * 
  *  <ul>
  *  <li><b>cache.enabled</b> - Specifies if the known plugins should be cached. Specify either {true, false}.</li>
- *  <li><b>cache.mode</b> - If we should use strong caching (slow but more accurate) or weak (much faster). Specify either {stong, weak}. </li>
+ *  <li><b>cache.mode</b> - If we should use strong caching (slow but more accurate), weak (much faster) or fast (only hashes a JAR's table of contents when its size or modification time changed). Specify either {stong, weak, fast}. </li>
  *  <li><b>cache.file</b> - Cache file to use. Specify any relative or absolute file path, file will be created / overwritten.</li>
+ *  <li><b>cache.max.age</b> - Time in milliseconds after which cache entries of JARs that were not used are removed. Default is 30 days; 0 keeps them forever.</li>
+ *  <li><b>cache.max.entries</b> - Number of JARs kept in the cache, the least recently used are removed first. Default is 1000; 0 keeps all.</li>
  *  <li><b>classpath.filter.default.enabled</b> - If Java default classpaths (e.g., jre/lib/*) should be filtered. Specify either {true, false}. Might not work on all platforms as expected.</li>
  *  <li><b>classpath.filter.default.pattern</b> - Specify what to filter in addition to default classpaths. Specify a list of ';' separated tokens, e.g., "jdk/lib;jre/lib". Will be matched against URL representations, so all \\ will be converted to / (and ' ' might become %20, ...).</li>
+ *  <li><b>classpath.scan.threads</b> - Number of threads scanning classpath locations for plugins concurrently. Specify a positive integer, defaults to the number of processors; 1 scans on the calling thread.</li>
+ *  <li><b>shutdown.timeout</b> - Time in milliseconds we wait for a single plugin to shut down before we proceed with the plugins it depends on. Default is 5000.</li>
+ *  <li><b>shutdown.deadline</b> - Time in milliseconds after which we stop waiting for plugins. The remaining ones are destroyed in the background, and all plugins not destroyed by then are reported as over budget. Default is 30000.</li>
+ *  <li><b>spawn.lazy</b> - If plugins should only be spawned when they are first used. Specify either {true, false}, default is false. Can also be enabled per plugin with the <code>plugin.lazy</code> key of the plugin class or the &#064;IsLazy annotation. Plugins with capabilities, &#064;Thread or &#064;Timer methods are always spawned right away.</li>
+ *  <li><b>spawn.watchdog.threshold</b> - Time in milliseconds after which a plugin still being spawned is reported as taking too long. Specify a positive integer, default is 250; 0 disables the reports.</li>
+ *  <li><b>thread.mode</b> - How &#064;Thread methods are executed unless they specify it themselves. Specify either {platform, pooled, virtual}, default is platform.</li>
+ *  <li><b>thread.pool.size</b> - Number of threads available to pooled &#064;Thread methods. Specify a positive integer, defaults to twice the number of processors.</li>
+ *  <li><b>thread.shutdown.timeout</b> - Time in milliseconds to wait for the &#064;Thread methods of a plugin to return after they were interrupted. Default is 1000.</li>
+ *  <li><b>timer.threads</b> - Number of threads shared by all &#064;Timer methods. Specify a positive integer, defaults to the number of processors.</li>
  *  <li><b>logging.level</b> - Either {OFF, FINEST, FINER, FINE, INFO, WARNING, ALL}. Specifies what to log on the console. </li>
  *  </ul><br/>
  * @see PluginManagerUtil
@@ -133,6 +147,38 @@ public interface PluginManager extends Plugin {
      */
     public <P extends Plugin> P getPlugin(Class<P> plugin, GetPluginOption... options);
 
+    /**
+     * Returns all plugins implementing the requested interface, in contrast to 
+     * {@link #getPlugin(Class, GetPluginOption...)} which only returns the first match. The 
+     * same options are recognized, an {@link OptionPluginSelector} acts as a filter 
+     * in this case. The returned collection is an immutable snapshot.
+     * 
+     * @param <P> Type of the plugin / return value.
+     * 
+     * @param plugin The interface to request (see {@link #getPlugin(Class, GetPluginOption...)}).
+     * @param options A set of options for the request.
+     * 
+     * @since 1.0.3
+     * @return All plugins implementing <code>plugin</code> and matching the options.
+     */
+    public <P extends Plugin> Collection<P> getPlugins(Class<P> plugin, GetPluginOption... options);
+
+    /**
+     * Same as {@link #getPlugins(Class, GetPluginOption...)}, but returns an iterator which 
+     * selects the matching plugins while iterating instead of creating a collection first. 
+     * Useful if you only need a few of many plugins. The iterator does not support 
+     * <code>remove()</code>.
+     * 
+     * @param <P> Type of the plugin / return value.
+     * 
+     * @param plugin The interface to request (see {@link #getPlugin(Class, GetPluginOption...)}).
+     * @param options A set of options for the request.
+     * 
+     * @since 1.0.3
+     * @return An iterator over all plugins implementing <code>plugin</code> and matching the options.
+     */
+    public <P extends Plugin> Iterator<P> iteratePlugins(Class<P> plugin, GetPluginOption... options);
+
     /**
      * Tells the plugin manager to shut down. This may be useful in cases where you want all 
      * created plugins to be destroyed and shutdown hooks called. Normally this happens during 
@@ -0,0 +1,63 @@
+/*
+ * ThreadController.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base;
+
+import net.xeoh.plugins.base.annotations.Thread;
+
+/**
+ * Passed to methods annotated with &#064;{@link Thread} that declare a parameter of this 
+ * type. Long running loops should check the controller regularly and return once the 
+ * plugin is being shut down, for example:<br/><br/>
+ * 
+ * <code>
+ * &#064;Thread<br/>
+ * public void background(ThreadController controller) {<br/>
+ * &nbsp;&nbsp;&nbsp;&nbsp;while (controller.isRunning()) { ...; controller.sleep(100); }<br/>
+ * }
+ * </code><br/><br/>
+ * 
+ * @author Ralf Biedert
+ * @see Thread
+ * @since 1.0.3
+ */
+public interface ThreadController {
+    /**
+     * Returns if the thread should continue to run.
+     * 
+     * @return False once the plugin is being shut down.
+     */
+    public boolean isRunning();
+
+    /**
+     * Sleeps for the given time, but wakes up early if the plugin is being shut down.
+     * 
+     * @param millis Time to sleep in milliseconds.
+     * @return The same as {@link #isRunning()} after sleeping.
+     */
+    public boolean sleep(long millis);
+}
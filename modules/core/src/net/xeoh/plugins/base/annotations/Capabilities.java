@@ -43,9 +43,10 @@ import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
  * 
  * As soon as the &#064;{@link Init} annotation is processed the capabilities function must be 
  * operational. Use this function for example to tell which file extensions you can handle 
- * or the (limited number of) host you can connect to. While this method can return different 
- * values on every call it is considered "bad taste" if latter calls return anything less 
- * than the previous calls.<br/><br/>
+ * or the (limited number of) host you can connect to. The method is called once after 
+ * initialization and its result is cached. If your capabilities change later on, call 
+ * <code>PluginManagerUtil.refreshCapabilities()</code>. It is considered "bad taste" if 
+ * latter calls return anything less than the previous calls.<br/><br/>
  * 
  * For example, if you want a plugin to indicate that it can handle a set of languages,
  * you could write:<br/><br/>
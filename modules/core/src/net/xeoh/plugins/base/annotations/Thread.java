@@ -32,6 +32,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import net.xeoh.plugins.base.ThreadController;
+
 /**
  * Methods marked with &#064;Thread will be called from a newly created thread. For example,
  * to specify that after the plugin's creation a specific method should be called from a 
@@ -42,19 +44,59 @@ import java.lang.annotation.Target;
  * public void background() { ... }
  * </code><br/><br/>
  * 
- * All threads are terminated upon <code>PluginManager.shutdown()</code>. 
+ * The method may also declare a single {@link ThreadController} parameter, which tells
+ * it when to stop. All threads are interrupted upon <code>PluginManager.shutdown()</code>,
+ * which then waits a bounded time for them to terminate. 
  * 
  * 
  * @author Ralf Biedert
  * @see Timer
+ * @see ThreadController
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Thread {
+    /**
+     * How the method is being executed.
+     *
+     * @author Ralf Biedert
+     */
+    public static enum ExecutionMode {
+        /** 
+         * Use the mode configured for the PluginManager (key <code>thread.mode</code>, 
+         * PLATFORM if not set).
+         */
+        DEFAULT,
+
+        /** A dedicated platform thread is created for the method */
+        PLATFORM,
+
+        /** 
+         * The method runs in a thread pool shared by all plugins and bounded in size 
+         * (key <code>thread.pool.size</code>). Long running methods occupy a pool 
+         * thread until they return. Pool threads are always daemonic. 
+         */
+        POOLED,
+
+        /** 
+         * A virtual thread is used if the JRE supports them, otherwise a platform 
+         * thread. Virtual threads are always daemonic.
+         */
+        VIRTUAL
+    }
+
     /**
      * If the thread should be daemonic.
      *
      * @return True if the VM may exit with the thread still running..
      */
     boolean isDaemonic() default true;
+
+    /**
+     * How the method should be executed.
+     * 
+     * @since 1.0.3
+     * @return .
+     */
+    ExecutionMode executionMode() default ExecutionMode.DEFAULT;
 }
@@ -68,6 +68,28 @@ public @interface Timer {
         RATE_BASED
     }
 
+    /**
+     * What a rate based timer does with ticks it missed because an invocation took 
+     * longer than its period.
+     *
+     * @author Ralf Biedert
+     *
+     */
+    public static enum OverrunPolicy {
+        /**
+         * Execute all missed ticks back to back
+         */
+        CATCH_UP,
+        /**
+         * Drop all missed ticks and wait for the next regular one
+         */
+        SKIP,
+        /**
+         * Execute all missed ticks as a single invocation
+         */
+        COALESCE
+    }
+
     /**
      * Period of the timer.
      *
@@ -88,4 +110,12 @@ public @interface Timer {
      * @return .
      */
     TimerType timerType() default TimerType.DELAY_BASED;
+
+    /**
+     * Specifies how a {@link TimerType#RATE_BASED} timer handles overruns. Ignored
+     * for delay based timers, which cannot overrun.
+     *
+     * @return .
+     */
+    OverrunPolicy overrunPolicy() default OverrunPolicy.CATCH_UP;
 }
@@ -0,0 +1,66 @@
+/*
+ * IsLazy.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.annotations.configuration;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import net.xeoh.plugins.base.annotations.Capabilities;
+import net.xeoh.plugins.base.annotations.Thread;
+import net.xeoh.plugins.base.annotations.Timer;
+
+/**
+ * Marks the given plugin to be spawned lazily. Instead of the plugin itself a lightweight 
+ * placeholder is registered, and the plugin is constructed, injected and initialized 
+ * on the first getPlugin() or injection that returns it (or the first call made 
+ * through the placeholder). For example, to specify that a plugin should be spawned lazily, 
+ * write<br/><br/>
+ * 
+ * <code>
+ * &#064;IsLazy<br/>
+ * &#064;PluginImplementation<br/>
+ * public class ServiceImpl implements Service { ... } 
+ * </code><br/><br/>
+ * 
+ * The same can be achieved by setting the configuration key <code>plugin.lazy</code> for 
+ * the class to true, or by setting <code>spawn.lazy</code> of the PluginManager for all 
+ * plugins. Plugins declaring {@link Capabilities} are always spawned right away, as 
+ * their capabilities have to be known when they are registered. The same holds for 
+ * plugins with {@link Thread} or {@link Timer} methods, which would otherwise never 
+ * start unless the plugin was requested.
+ * 
+ * @author Ralf Biedert
+ * @since 1.0.3
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface IsLazy {
+    // Marker only
+}
@@ -29,8 +29,6 @@ package net.xeoh.plugins.base.impl;
 
 import static net.jcores.jre.CoreKeeper.$;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.logging.Logger;
@@ -38,7 +36,6 @@ import java.util.logging.Logger;
 import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.PluginInformation;
 import net.xeoh.plugins.base.PluginManager;
-import net.xeoh.plugins.base.annotations.Capabilities;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import net.xeoh.plugins.base.annotations.injections.InjectPlugin;
 import net.xeoh.plugins.base.annotations.meta.Author;
@@ -46,6 +43,7 @@ import net.xeoh.plugins.base.annotations.meta.Stateless;
 import net.xeoh.plugins.base.annotations.meta.Version;
 import net.xeoh.plugins.base.impl.registry.PluginMetaInformation;
 import net.xeoh.plugins.base.impl.registry.PluginRegistry;
+import net.xeoh.plugins.base.impl.spawning.LazyPluginHandler;
 import net.xeoh.plugins.base.options.GetInformationOption;
 
 /**
@@ -86,21 +84,24 @@ public class PluginInformationImpl implements PluginInformation {
         switch (item) {
 
         case CAPABILITIES:
-            // Caps are only supported for plugins currently
-            final String[] caps = getCaps(plugin);
-            for (final String string : caps) {
-                rval.add(string);
+            // Caps are only supported for plugins currently, use the cached ones if possible
+            final PluginMetaInformation pluginMeta = pmi.getPluginRegistry().getMetaInformationFor(plugin);
+            if (pluginMeta != null && pluginMeta.capabilities != null) {
+                rval.addAll(pluginMeta.capabilities);
+                break;
             }
+
+            rval.addAll(pmi.getSpawner().obtainCapabilities(plugin));
             break;
 
         case AUTHORS:
-            final Author author = plugin.getClass().getAnnotation(Author.class);
+            final Author author = LazyPluginHandler.getPluginClass(plugin).getAnnotation(Author.class);
             if (author == null) break;
             rval.add(author.name());
             break;
 
         case VERSION:
-            final Version version = plugin.getClass().getAnnotation(Version.class);
+            final Version version = LazyPluginHandler.getPluginClass(plugin).getAnnotation(Version.class);
             if (version == null) break;
             rval.add(Integer.toString(version.version()));
             
@@ -125,40 +126,6 @@ public class PluginInformationImpl implements PluginInformation {
         return rval;
     }
 
-    /**
-     * @param plugin
-     * @return
-     */
-    private String[] getCaps(final Plugin plugin) {
-        final Class<? extends Plugin> spawnClass = plugin.getClass();
-
-        final Method[] methods = spawnClass.getMethods();
-
-        // Search for proper method
-        for (final Method method : methods) {
-
-            // Init methods will be marked by the corresponding annotation.
-            final Capabilities caps = method.getAnnotation(Capabilities.class);
-            if (caps != null) {
-
-                Object result = null;
-                try {
-                    result = method.invoke(plugin, new Object[0]);
-                } catch (final IllegalArgumentException e) {
-                    //
-                } catch (final IllegalAccessException e) {
-                    //
-                } catch (final InvocationTargetException e) {
-                    //
-                }
-                if (result != null && result instanceof String[])
-                    return (String[]) result;
-            }
-        }
-
-        return new String[0];
-    }
-
     /* (non-Javadoc)
      * @see net.xeoh.plugins.base.PluginInformation#getInformation(net.xeoh.plugins.base.Plugin, java.lang.Class)
      */
@@ -30,14 +30,18 @@ package net.xeoh.plugins.base.impl;
 import static net.jcores.jre.CoreKeeper.$;
 
 import java.net.URI;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 
 import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.PluginConfiguration;
 import net.xeoh.plugins.base.PluginInformation;
-import net.xeoh.plugins.base.PluginInformation.Information;
 import net.xeoh.plugins.base.PluginManager;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import net.xeoh.plugins.base.annotations.meta.Author;
@@ -45,9 +49,10 @@ import net.xeoh.plugins.base.annotations.meta.RecognizesOption;
 import net.xeoh.plugins.base.annotations.meta.Version;
 import net.xeoh.plugins.base.diagnosis.channels.tracing.PluginManagerTracer;
 import net.xeoh.plugins.base.impl.classpath.ClassPathManager;
-import net.xeoh.plugins.base.impl.registry.PluginMetaInformation;
-import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginStatus;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCache.HashMode;
 import net.xeoh.plugins.base.impl.registry.PluginRegistry;
+import net.xeoh.plugins.base.impl.spawning.LazyPluginHandler;
+import net.xeoh.plugins.base.impl.spawning.OrderedShutdown;
 import net.xeoh.plugins.base.impl.spawning.SpawnResult;
 import net.xeoh.plugins.base.impl.spawning.Spawner;
 import net.xeoh.plugins.base.options.AddPluginsFromOption;
@@ -73,6 +78,9 @@ import net.xeoh.plugins.informationbroker.impl.InformationBrokerImpl;
 @Version(version = 1 * Version.UNIT_MAJOR + 0 * Version.UNIT_MINOR + 2 * Version.UNIT_RELEASE)
 @Author(name = "Ralf Biedert")
 public class PluginManagerImpl implements PluginManager {
+    /** Used when no capabilities were requested */
+    private static final String[] NO_CAPABILITIES = new String[0];
+
     /** User properties for plugin configuration */
     private final PluginConfiguration configuration;
 
@@ -88,12 +96,18 @@ public class PluginManagerImpl implements PluginManager {
     /** Indicates if a shutdown has already been one */
     private boolean shutdownPerformed = false;
 
+    /** Plugins that exceeded their time budget during shutdown */
+    private Map<Plugin, Long> shutdownOverruns = Collections.emptyMap();
+
     /** User properties for plugin configuration */
     PluginInformation information;
 
     /** Diagnostic facilities */
     Diagnosis diagnosis;
 
+    /** If false, status messages are not processed and getPlugin() may take its fast path */
+    boolean tracingEnabled = true;
+
     /**
      * Construct new properties.
      * 
@@ -147,6 +161,13 @@ public class PluginManagerImpl implements PluginManager {
     @RecognizesOption(option = OptionPluginSelector.class)
     public <P extends Plugin> P getPlugin(final Class<P> requestedPlugin,
                                           GetPluginOption... options) {
+        // Fast path for the common cases, does not allocate anything when tracing is off
+        if (!this.tracingEnabled && requestedPlugin != null && requestedPlugin.isInterface()) {
+            final String[] capabilities = getSimpleCapabilities(options);
+            if (capabilities != null)
+                return (P) LazyPluginHandler.materialize(this.pluginRegistry.getFirstActivePluginWith(requestedPlugin, capabilities));
+        }
+
         // Report our request.
         if (this.diagnosis != null) {
             String name = requestedPlugin == null ? "null" : requestedPlugin.getCanonicalName();
@@ -173,62 +194,132 @@ public class PluginManagerImpl implements PluginManager {
         // Used to process the options
         final OptionUtils<GetPluginOption> ou = new OptionUtils<GetPluginOption>(options);
 
-        // We use this one to select the plugin
+        // We use this one to select the plugin (if any)
         PluginSelector<P> pluginSelector = null;
 
+        // The plugins we consider
+        Collection<Plugin> candidates = null;
+
         // Check our options. In case we have a plugin selector, only use the selector
         if (ou.contains(OptionPluginSelector.class)) {
             pluginSelector = ou.get(OptionPluginSelector.class).getSelector();
+            candidates = this.pluginRegistry.getActivePluginsFor(requestedPlugin);
         } else {
             // Capabilites we require
             final String capabilites[] = ou.get(OptionCapabilities.class, new OptionCapabilities()).getCapabilities();
 
-            // Get caps as list
-            final Collection<String> caps = Arrays.asList(capabilites);
+            // Only plugins having all of them are candidates
+            candidates = this.pluginRegistry.getActivePluginsWith(requestedPlugin, capabilites);
+        }
 
-            // Create our own selector
-            pluginSelector = new PluginSelector<P>() {
-                public boolean selectPlugin(final Plugin plugin) {
+        // Check for each candidate if it matches
+        for (final Plugin plugin : candidates) {
+            if (this.diagnosis != null)
+                this.diagnosis.channel(PluginManagerTracer.class).status("get/considering", new OptionInfo("plugin", plugin.toString()));
 
-                    // In case we have caps do special handling and don't return the next
-                    // best plugin
-                    if (caps.size() > 0) {
-                        Collection<String> pcaps = PluginManagerImpl.this.information.getInformation(Information.CAPABILITIES, plugin);
+            if (pluginSelector == null || pluginSelector.selectPlugin((P) plugin)) {
+                if (this.diagnosis != null)
+                    this.diagnosis.channel(PluginManagerTracer.class).status("get/end", new OptionInfo("return", plugin.toString()));
+                return (P) LazyPluginHandler.materialize(plugin);
+            }
+        }
 
-                        // Check the plugin has them all
-                        if (pcaps.containsAll(caps)) return true;
-                        return false;
-                    }
+        if (this.diagnosis != null)
+            this.diagnosis.channel(PluginManagerTracer.class).status("get/end", new OptionInfo("return", null));
+        return null;
+    }
 
-                    return true;
-                }
-            };
+    /*
+     * (non-Javadoc)
+     * 
+     * @see net.xeoh.plugins.base.PluginManager#getPlugins(java.lang.Class,
+     * net.xeoh.plugins.base.options.GetPluginOption[])
+     */
+    @RecognizesOption(option = OptionPluginSelector.class)
+    public <P extends Plugin> Collection<P> getPlugins(final Class<P> requestedPlugin,
+                                                       GetPluginOption... options) {
+        final List<P> rval = new ArrayList<P>();
+        final Iterator<P> iterator = iteratePlugins(requestedPlugin, options);
+
+        while (iterator.hasNext()) {
+            rval.add(iterator.next());
         }
 
-        // Check for each plugin if it matches
-        for (final Plugin plugin : this.pluginRegistry.getAllPlugins()) {
-            if (this.diagnosis != null)
-                this.diagnosis.channel(PluginManagerTracer.class).status("get/considering", new OptionInfo("plugin", plugin.toString()));
+        return Collections.unmodifiableList(rval);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see net.xeoh.plugins.base.PluginManager#iteratePlugins(java.lang.Class,
+     * net.xeoh.plugins.base.options.GetPluginOption[])
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @RecognizesOption(option = OptionPluginSelector.class)
+    public <P extends Plugin> Iterator<P> iteratePlugins(final Class<P> requestedPlugin,
+                                                         GetPluginOption... options) {
+        // We only handle interfaces, just as getPlugin()
+        if (requestedPlugin == null || !requestedPlugin.isInterface())
+            return Collections.<P> emptyList().iterator();
+
+        final OptionUtils<GetPluginOption> ou = new OptionUtils<GetPluginOption>(options);
+        final String capabilites[] = ou.get(OptionCapabilities.class, new OptionCapabilities()).getCapabilities();
+        final Iterator<P> candidates = (Iterator) this.pluginRegistry.iterateActivePluginsWith(requestedPlugin, capabilites);
 
-            // Check the meta information for this plugin. We only want active classes
-            final PluginMetaInformation metaInformation = this.pluginRegistry.getMetaInformationFor(plugin);
+        if (!ou.contains(OptionPluginSelector.class)) return candidates;
 
-            // Plugins not active are not considered
-            if (metaInformation.pluginStatus != PluginStatus.ACTIVE) continue;
+        // Only return the plugins the selector accepts
+        final PluginSelector<P> pluginSelector = ou.get(OptionPluginSelector.class).getSelector();
+        return new Iterator<P>() {
+            private P next = null;
 
-            // Check if the plugin can be assigned to the requested class
-            if (requestedPlugin.isAssignableFrom(plugin.getClass())) {
-                if (pluginSelector.selectPlugin((P) plugin)) {
-                    if (this.diagnosis != null)
-                        this.diagnosis.channel(PluginManagerTracer.class).status("get/end", new OptionInfo("return", plugin.toString()));
-                    return (P) plugin;
+            @Override
+            public boolean hasNext() {
+                while (this.next == null && candidates.hasNext()) {
+                    final P plugin = candidates.next();
+                    if (pluginSelector.selectPlugin(plugin)) this.next = plugin;
                 }
+
+                return this.next != null;
+            }
+
+            @Override
+            public P next() {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                final P rval = this.next;
+                this.next = null;
+                return rval;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
             }
+        };
+    }
+
+    /**
+     * Checks if the given options only specify capabilities (or nothing at all).
+     * 
+     * @param options The options passed to getPlugin().
+     * @return The requested capabilities, or <code>null</code> if the options require
+     * the full lookup.
+     */
+    private static String[] getSimpleCapabilities(GetPluginOption[] options) {
+        if (options == null) return NO_CAPABILITIES;
+
+        String[] rval = null;
+
+        for (int i = 0; i < options.length; i++) {
+            final GetPluginOption option = options[i];
+
+            if (option instanceof OptionPluginSelector) return null;
+            if (rval == null && option instanceof OptionCapabilities)
+                rval = ((OptionCapabilities) option).getCapabilities();
         }
 
-        if (this.diagnosis != null)
-            this.diagnosis.channel(PluginManagerTracer.class).status("get/end", new OptionInfo("return", null));
-        return null;
+        return rval == null ? NO_CAPABILITIES : rval;
     }
 
     /*
@@ -245,13 +336,14 @@ public class PluginManagerImpl implements PluginManager {
             return;
         }
 
-        // Destroy plugins in a random order
-        for (final Plugin p : this.pluginRegistry.getAllPlugins()) {
-            this.diagnosis.channel(PluginManagerTracer.class).status("shutdown/destroy", new OptionInfo("plugin", p.getClass().getCanonicalName()));
-            this.spawner.destroyPlugin(p, this.pluginRegistry.getMetaInformationFor(p));
-        }
+        // Destroy plugins in reverse dependency order, independent ones in parallel
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.configuration);
+        final int timeout = pcu.getInt(PluginManager.class, "shutdown.timeout", Integer.valueOf(5000));
+        final int deadline = pcu.getInt(PluginManager.class, "shutdown.deadline", Integer.valueOf(30000));
+        this.shutdownOverruns = new OrderedShutdown(this.spawner, this.pluginRegistry, timeout, deadline).run();
 
         // Curtains down, lights out.
+        this.spawner.shutdown();
         this.pluginRegistry.clear();
         this.shutdownPerformed = true;
 
@@ -269,11 +361,16 @@ public class PluginManagerImpl implements PluginManager {
 
         this.classPathManager.getCache().setEnabled(pcu.getBoolean(PluginManager.class, "cache.enabled", false));
         this.classPathManager.getCache().setCachePath(cachePath);
+        this.classPathManager.getCache().setMaxEntries(pcu.getInt(PluginManager.class, "cache.max.entries", 1000));
+        this.classPathManager.getCache().setMaxAge(pcu.getLong(PluginManager.class, "cache.max.age", 30 * 24 * 60 * 60 * 1000L));
 
-        // Check if we should enable weak mode
+        // Check if we should enable weak or fast mode
         final String mode = pcu.getString(PluginManager.class, "cache.mode", "strong");
         if (mode.equals("weak")) {
-            this.classPathManager.getCache().setWeakMode(true);
+            this.classPathManager.getCache().setHashMode(HashMode.WEAK);
+        }
+        if (mode.equals("fast")) {
+            this.classPathManager.getCache().setHashMode(HashMode.FAST);
         }
 
     }
@@ -295,6 +392,7 @@ public class PluginManagerImpl implements PluginManager {
         ((PluginInformationImpl) this.information).pluginManager = this;
         ((DiagnosisImpl) this.diagnosis).configuration = this.configuration;
         ((DiagnosisImpl) this.diagnosis).init();
+        this.tracingEnabled = ((DiagnosisImpl) this.diagnosis).isEnabled();
 
         hookPlugin(new SpawnResult(this.information));
         hookPlugin(new SpawnResult(this.diagnosis));
@@ -302,7 +400,7 @@ public class PluginManagerImpl implements PluginManager {
         // Set all plugins as active we have so far ...
         final Collection<Plugin> allPlugins = this.pluginRegistry.getAllPlugins();
         for (Plugin plugin : allPlugins) {
-            this.pluginRegistry.getMetaInformationFor(plugin).pluginStatus = PluginStatus.ACTIVE;
+            this.pluginRegistry.activatePlugin(plugin);
         }
     }
 
@@ -318,13 +416,29 @@ public class PluginManagerImpl implements PluginManager {
         // after the plugins was registered?
         this.spawner.processThisPluginLoadedAnnotation(p.plugin, p.metaInformation);
 
+        // Plugins not created by the spawner still need their capabilities 
+        if (p.metaInformation.capabilities == null)
+            p.metaInformation.capabilities = this.spawner.obtainCapabilities(p.plugin);
+
         // Finally register it.
         this.pluginRegistry.registerPlugin(p.plugin, p.metaInformation);
+        this.spawner.registerPluginLoadedMethods(p.plugin, p.metaInformation);
 
         // Process plugin loaded information
         this.spawner.processOtherPluginLoadedAnnotation(p.plugin);
     }
 
+    /**
+     * Queries the capabilities of the given plugin again and updates the capability 
+     * index.
+     * 
+     * @param plugin The plugin to refresh.
+     */
+    public void refreshCapabilities(Plugin plugin) {
+        if (plugin == null) return;
+        this.pluginRegistry.updateCapabilities(plugin, this.spawner.obtainCapabilities(plugin));
+    }
+
     /**
      * Returns the ClassPathManger handling our plugin sources.
      * 
@@ -361,6 +475,16 @@ public class PluginManagerImpl implements PluginManager {
         return this.diagnosis;
     }
 
+    /**
+     * Returns the plugins that exceeded their time budget during shutdown, with the time 
+     * in ms they took to shut down, or -1 if they did not finish in time.
+     * 
+     * @return The plugins exceeding their budget.
+     */
+    public Map<Plugin, Long> getShutdownOverruns() {
+        return this.shutdownOverruns;
+    }
+
     /**
      * Returns the main spawner to instantiate plugins.
      * 
@@ -0,0 +1,285 @@
+/*
+ * ClassFileInformation.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.classpath;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The parts of a class file we need to find plugins, read directly from the bytecode
+ * so the class does not have to be loaded. All names are internal names, e.g., 
+ * <code>net/xeoh/plugins/base/Plugin</code>.
+ * 
+ * @author Ralf Biedert
+ */
+public class ClassFileInformation {
+    /** Access flag of interfaces */
+    private static final int ACC_INTERFACE = 0x0200;
+
+    /** Name of the class */
+    public final String name;
+
+    /** Name of the superclass (null for java/lang/Object) */
+    public final String superName;
+
+    /** Names of all directly implemented interfaces */
+    public final String[] interfaces;
+
+    /** Access flags of the class */
+    public final int access;
+
+    /** Types of all runtime visible annotations of the class */
+    public final Collection<String> annotations;
+
+    /**
+     * @param name
+     * @param superName
+     * @param interfaces
+     * @param access
+     * @param annotations
+     */
+    private ClassFileInformation(String name, String superName, String[] interfaces,
+                                 int access, Collection<String> annotations) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.access = access;
+        this.annotations = annotations;
+    }
+
+    /**
+     * @return True if the class is an interface (or an annotation).
+     */
+    public boolean isInterface() {
+        return (this.access & ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * @param annotation
+     * @return True if the class is annotated with the given annotation.
+     */
+    public boolean hasAnnotation(Class<?> annotation) {
+        return this.annotations.contains(getInternalName(annotation.getName()));
+    }
+
+    /**
+     * Converts a binary class name (e.g. <code>a.b.C$D</code>) to an internal one.
+     * 
+     * @param name
+     * @return .
+     */
+    public static String getInternalName(String name) {
+        return name.replace('.', '/');
+    }
+
+    /**
+     * Reads the class file from the given stream. The stream is closed afterwards.
+     * 
+     * @param stream
+     * @return The information.
+     * @throws IOException If the stream does not contain a (supported) class file.
+     */
+    public static ClassFileInformation read(InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+        try {
+            if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file");
+            in.readUnsignedShort(); // minor
+            in.readUnsignedShort(); // major
+
+            // Constant pool, we only keep UTF8 entries and class references
+            final int count = in.readUnsignedShort();
+            final String[] utf8 = new String[count];
+            final int[] classes = new int[count];
+
+            for (int i = 1; i < count; i++) {
+                final int tag = in.readUnsignedByte();
+                switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classes[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    skip(in, 2);
+                    break;
+                case 15: // MethodHandle
+                    skip(in, 3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    skip(in, 4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    skip(in, 8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+
+            final int access = in.readUnsignedShort();
+            final String name = utf8[classes[in.readUnsignedShort()]];
+            final int superIndex = in.readUnsignedShort();
+            final String superName = superIndex == 0 ? null : utf8[classes[superIndex]];
+
+            final String[] interfaces = new String[in.readUnsignedShort()];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = utf8[classes[in.readUnsignedShort()]];
+            }
+
+            // Skip fields and methods
+            for (int members = 0; members < 2; members++) {
+                final int n = in.readUnsignedShort();
+                for (int i = 0; i < n; i++) {
+                    skip(in, 6);
+                    skipAttributes(in);
+                }
+            }
+
+            // Class attributes, we only want the annotations
+            final List<String> annotations = new ArrayList<String>();
+            final int attributes = in.readUnsignedShort();
+            for (int i = 0; i < attributes; i++) {
+                final String attribute = utf8[in.readUnsignedShort()];
+                final int length = in.readInt();
+
+                if (!"RuntimeVisibleAnnotations".equals(attribute)) {
+                    skip(in, length);
+                    continue;
+                }
+
+                final int n = in.readUnsignedShort();
+                for (int j = 0; j < n; j++) {
+                    final String descriptor = utf8[in.readUnsignedShort()];
+                    annotations.add(descriptor.substring(1, descriptor.length() - 1));
+                    skipAnnotationValues(in);
+                }
+            }
+
+            return new ClassFileInformation(name, superName, interfaces, access, annotations);
+        } catch (RuntimeException e) {
+            // Broken constant pool references and the like
+            throw new IOException("Malformed class file: " + e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param in
+     * @throws IOException
+     */
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        final int n = in.readUnsignedShort();
+        for (int i = 0; i < n; i++) {
+            skip(in, 2);
+            skip(in, in.readInt());
+        }
+    }
+
+    /**
+     * Skips the element value pairs of an annotation.
+     * 
+     * @param in
+     * @throws IOException
+     */
+    private static void skipAnnotationValues(DataInputStream in) throws IOException {
+        final int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            skip(in, 2);
+            skipElementValue(in);
+        }
+    }
+
+    /**
+     * @param in
+     * @throws IOException
+     */
+    private static void skipElementValue(DataInputStream in) throws IOException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+        case 'e':
+            skip(in, 4);
+            break;
+        case '@':
+            skip(in, 2);
+            skipAnnotationValues(in);
+            break;
+        case '[':
+            final int n = in.readUnsignedShort();
+            for (int i = 0; i < n; i++) {
+                skipElementValue(in);
+            }
+            break;
+        default:
+            skip(in, 2);
+        }
+    }
+
+    /**
+     * Skips exactly the given number of bytes.
+     * 
+     * @param in
+     * @param length
+     * @throws IOException
+     */
+    private static void skip(DataInputStream in, int length) throws IOException {
+        if (length < 0) throw new IOException("Invalid attribute length");
+
+        int remaining = length;
+        while (remaining > 0) {
+            final int skipped = in.skipBytes(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+                continue;
+            }
+
+            // Throws an EOFException if the file is truncated
+            in.readByte();
+            remaining--;
+        }
+    }
+}
@@ -27,17 +27,24 @@
  */
 package net.xeoh.plugins.base.impl.classpath;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.Annotation;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.annotations.PluginImplementation;
 import net.xeoh.plugins.base.impl.PluginManagerImpl;
 import net.xeoh.plugins.base.impl.classpath.cache.JARCache;
 import net.xeoh.plugins.base.impl.classpath.cache.JARCache.JARInformation;
@@ -191,10 +198,59 @@ public class ClassPathManager {
      */
     public Collection<String> findSubclassesFor(AbstractClassPathLocation location,
                                                 Class<?> superclass) {
+        return findSubclassesFor(location, superclass, null, "");
+    }
+
+    /**
+     * Finds all classes of the given location implementing {@link Plugin} and annotated 
+     * with &#064;{@link PluginImplementation}, i.e., all classes worth loading as plugins.
+     * 
+     * @param location The location to search for.
+     * 
+     * @return A list of plugin class names.
+     */
+    public Collection<String> findPluginImplementations(AbstractClassPathLocation location) {
+        return findPluginImplementations(location, "");
+    }
+
+    /**
+     * Finds all plugin classes of the given location (see 
+     * {@link #findPluginImplementations(AbstractClassPathLocation)}) whose name starts 
+     * with the given prefix. Classes outside the prefix are not inspected at all.
+     * 
+     * @param location The location to search for.
+     * @param prefix Prefix of the class names, e.g., <code>com.acme.plugins.</code>.
+     * 
+     * @return A list of plugin class names.
+     */
+    public Collection<String> findPluginImplementations(AbstractClassPathLocation location,
+                                                        String prefix) {
+        return findSubclassesFor(location, Plugin.class, PluginImplementation.class, prefix);
+    }
+
+    /**
+     * Finds all subclasses for the given superclass, optionally only those carrying 
+     * the given annotation. Class files are inspected directly, so classes are not 
+     * loaded (only if their bytecode or that of one of their supertypes can't be read).
+     * 
+     * @param location The location to search for.
+     * @param superclass The superclass to obtain subclasses for.
+     * @param annotation The annotation required (or null).
+     * @param prefix Prefix of the class names to inspect (empty for all).
+     * 
+     * @return A list of class names.
+     */
+    private Collection<String> findSubclassesFor(AbstractClassPathLocation location,
+                                                 Class<?> superclass,
+                                                 Class<? extends Annotation> annotation,
+                                                 String prefix) {
 
         final Collection<String> rval = new ArrayList<String>();
         if (!this.initializedProperly) return rval;
 
+        final String key = annotation == null ? superclass.getCanonicalName() : superclass.getCanonicalName() + "@" + annotation.getCanonicalName();
+        final String prefixedKey = prefix.length() == 0 ? key : key + "#" + prefix;
+
         // Check if we can get the requested information out of the cache
         JARInformation cacheEntry = null;
 
@@ -203,75 +259,185 @@ public class ClassPathManager {
             cacheEntry = ((JARClasspathLocation) location).getCacheEntry();
 
             if (cacheEntry != null) {
-                final Collection<String> collection = cacheEntry.subclasses.get(superclass.getCanonicalName());
-                if (collection != null) return collection;
+                synchronized (cacheEntry) {
+                    final Collection<String> collection = cacheEntry.subclasses.get(prefixedKey);
+                    if (collection != null) return collection;
+
+                    // A complete result of an earlier scan will do as well
+                    final Collection<String> all = cacheEntry.subclasses.get(key);
+                    if (all != null) {
+                        for (String name : all) {
+                            if (name.startsWith(prefix)) rval.add(name);
+                        }
+                        return rval;
+                    }
+                }
             }
         }
 
         // No? Okay, search the hard way ...
         try {
             final ClassLoader classLoader = this.classWorld.getRealm(location.getRealm()).getClassLoader();
-            final Collection<String> listClassNames = location.listToplevelClassNames();
+            final Collection<String> listClassNames = location.listToplevelClassNames(prefix);
 
-            for (String name : listClassNames) {
-                try {
-                    final Class<?> c = Class.forName(name, false, classLoader);
+            final String target = ClassFileInformation.getInternalName(superclass.getName());
+            final Map<String, Boolean> known = new HashMap<String, Boolean>();
 
-                    // No interfaces please
-                    if (c.isInterface()) continue;
+            for (String name : listClassNames) {
+                final ClassFileInformation information = readClassFile(classLoader, ClassFileInformation.getInternalName(name));
 
-                    if (superclass.isAssignableFrom(c) && !superclass.getCanonicalName().equals(c.getCanonicalName())) {
-                        rval.add(name);
-                    }
-                } catch (ClassNotFoundException e) {
-                    this.logger.fine("ClassNotFoundException. Unable to inspect class " + name + " although it appears to be one.");
-
-                    // Print all causes, helpful for debugging
-                    Throwable cause = e.getCause();
-                    while (cause != null) {
-                        this.logger.fine("Reason " + cause.getMessage());
-                        cause = cause.getCause();
-                    }
-                } catch (final NoClassDefFoundError e) {
-                    this.logger.finer("Ignored class " + name + " due to unresolved dependencies");
-
-                    // Print all causes, helpful for debugging
-                    Throwable cause = e.getCause();
-                    while (cause != null) {
-                        this.logger.fine("Reason " + cause.getMessage());
-                        cause = cause.getCause();
-                    }
-                } catch (SecurityException e) {
-                    this.logger.fine("SecurityException while trying to find subclasses. Cause of trouble: " + name + ". This does not neccessarily mean problems however.");
+                // Only load the class if we can't tell from its bytecode
+                if (information == null) {
+                    if (isSubclassByLoading(classLoader, name, superclass, annotation)) rval.add(name);
+                    continue;
+                }
 
-                    // Print all causes, helpful for debugging
-                    Throwable cause = e.getCause();
-                    while (cause != null) {
-                        this.logger.fine("Reason " + cause.getMessage());
-                        cause = cause.getCause();
-                    }
-                } catch (Exception e) {
-                    this.logger.finer("Ignored class " + name + " due to some other error");
+                if (information.isInterface()) continue;
+                if (annotation != null && !information.hasAnnotation(annotation)) continue;
+                if (information.name.equals(target)) continue;
 
-                    Throwable cause = e.getCause();
-                    while (cause != null) {
-                        this.logger.fine("Reason " + cause.getMessage());
-                        cause = cause.getCause();
-                    }
+                final Boolean subclass = isSubclass(classLoader, information, target, known);
+                if (subclass == null) {
+                    if (isSubclassByLoading(classLoader, name, superclass, annotation)) rval.add(name);
+                } else if (subclass.booleanValue()) {
+                    rval.add(name);
                 }
             }
         } catch (NoSuchRealmException e1) {
             e1.printStackTrace();
         }
 
-        // Update the cache information
+        // Update the cache information (identical JARs share their entry)
         if (cacheEntry != null) {
-            cacheEntry.subclasses.put(superclass.getCanonicalName(), rval);
+            synchronized (cacheEntry) {
+                cacheEntry.subclasses.put(prefixedKey, rval);
+                cacheEntry.changed = true;
+            }
+        }
+
+        return rval;
+    }
+
+    /**
+     * Walks the type hierarchy of the given class symbolically.
+     * 
+     * @param classLoader The loader to read class files with.
+     * @param information The class to check.
+     * @param target Internal name of the type we search.
+     * @param known Results for types already checked.
+     * 
+     * @return True if the class extends or implements the target, null if that could 
+     * not be decided because some class file was not readable.
+     */
+    private Boolean isSubclass(ClassLoader classLoader, ClassFileInformation information,
+                               String target, Map<String, Boolean> known) {
+        final List<String> supertypes = new ArrayList<String>();
+        if (information.superName != null) supertypes.add(information.superName);
+        for (String i : information.interfaces) {
+            supertypes.add(i);
+        }
+
+        Boolean rval = Boolean.FALSE;
+
+        for (String type : supertypes) {
+            if (type.equals(target)) return Boolean.TRUE;
+
+            // Core classes can't extend anything else
+            if (type.startsWith("java/") && !target.startsWith("java/")) continue;
+
+            Boolean result = known.get(type);
+            if (result == null && !known.containsKey(type)) {
+                final ClassFileInformation supertype = readClassFile(classLoader, type);
+                result = supertype == null ? null : isSubclass(classLoader, supertype, target, known);
+                known.put(type, result);
+            }
+
+            if (result == null) rval = null;
+            else if (result.booleanValue()) return Boolean.TRUE;
         }
 
         return rval;
     }
 
+    /**
+     * Reads a class file through the given loader without loading the class.
+     * 
+     * @param classLoader
+     * @param internalName
+     * @return The information, or null if the class file can't be read.
+     */
+    private ClassFileInformation readClassFile(ClassLoader classLoader, String internalName) {
+        final InputStream stream = classLoader.getResourceAsStream(internalName + ".class");
+        if (stream == null) return null;
+
+        try {
+            return ClassFileInformation.read(stream);
+        } catch (IOException e) {
+            this.logger.fine("Unable to read class file of " + internalName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks the given class by loading it (without initializing it).
+     * 
+     * @param classLoader
+     * @param name
+     * @param superclass
+     * @param annotation The annotation required (or null).
+     * @return True if the class is a subclass.
+     */
+    private boolean isSubclassByLoading(ClassLoader classLoader, String name,
+                                        Class<?> superclass,
+                                        Class<? extends Annotation> annotation) {
+        try {
+            final Class<?> c = Class.forName(name, false, classLoader);
+
+            // No interfaces please
+            if (c.isInterface()) return false;
+            if (annotation != null && c.getAnnotation(annotation) == null) return false;
+
+            return superclass.isAssignableFrom(c) && !superclass.getCanonicalName().equals(c.getCanonicalName());
+        } catch (ClassNotFoundException e) {
+            this.logger.fine("ClassNotFoundException. Unable to inspect class " + name + " although it appears to be one.");
+
+            // Print all causes, helpful for debugging
+            Throwable cause = e.getCause();
+            while (cause != null) {
+                this.logger.fine("Reason " + cause.getMessage());
+                cause = cause.getCause();
+            }
+        } catch (final NoClassDefFoundError e) {
+            this.logger.finer("Ignored class " + name + " due to unresolved dependencies");
+
+            // Print all causes, helpful for debugging
+            Throwable cause = e.getCause();
+            while (cause != null) {
+                this.logger.fine("Reason " + cause.getMessage());
+                cause = cause.getCause();
+            }
+        } catch (SecurityException e) {
+            this.logger.fine("SecurityException while trying to find subclasses. Cause of trouble: " + name + ". This does not neccessarily mean problems however.");
+
+            // Print all causes, helpful for debugging
+            Throwable cause = e.getCause();
+            while (cause != null) {
+                this.logger.fine("Reason " + cause.getMessage());
+                cause = cause.getCause();
+            }
+        } catch (Exception e) {
+            this.logger.finer("Ignored class " + name + " due to some other error");
+
+            Throwable cause = e.getCause();
+            while (cause != null) {
+                this.logger.fine("Reason " + cause.getMessage());
+                cause = cause.getCause();
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Adds a classpath location to this manager.
      * 
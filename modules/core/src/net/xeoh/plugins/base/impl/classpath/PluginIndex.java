@@ -0,0 +1,258 @@
+/*
+ * PluginIndex.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.classpath;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of all plugins inside a JAR, generated at build time so the JAR does not have
+ * to be scanned class by class. The index is a small UTF-8 text file stored at 
+ * {@link #LOCATION}. After a header line it contains one line per plugin with four
+ * tab separated columns: the binary class name, its plugin interfaces, its required 
+ * <code>&#064;InjectPlugin</code> dependencies and the names of its 
+ * <code>&#064;Capabilities</code> methods. Multiple values of a column are separated 
+ * by commas. A dependency is the plugin type it waits for, followed by the 
+ * capabilities it requires in brackets if there are any (e.g., <code>a.b.C[X|Y]</code>).
+ * If the dependencies could not be determined at build time the column is 
+ * {@link #UNKNOWN}, and the loader inspects the class instead.
+ * 
+ * @author Ralf Biedert
+ */
+public class PluginIndex {
+    /** Where the index is stored inside a JAR */
+    public static final String LOCATION = "META-INF/jspf/plugins.idx";
+
+    /** First line of every index, changes if the format changes */
+    public static final String HEADER = "jspf.index 3";
+
+    /** Column value of dependencies unknown at build time */
+    public static final String UNKNOWN = "?";
+
+    /**
+     * A single plugin of the index.
+     * 
+     * @author Ralf Biedert
+     */
+    public static class Entry {
+        /** Binary name of the implementation, e.g., <code>a.b.C$D</code> */
+        public final String className;
+
+        /** Plugin interfaces implemented by the class */
+        public final List<String> interfaces;
+
+        /** Required dependencies of the class as described above, null if unknown */
+        public final List<String> dependencies;
+
+        /** Names of the methods providing capabilities (they are only known at runtime) */
+        public final List<String> capabilities;
+
+        /**
+         * @param className
+         * @param interfaces
+         * @param dependencies
+         * @param capabilities
+         */
+        public Entry(String className, List<String> interfaces, List<String> dependencies,
+                     List<String> capabilities) {
+            this.className = className;
+            this.interfaces = interfaces;
+            this.dependencies = dependencies;
+            this.capabilities = capabilities;
+        }
+    }
+
+    /** All plugins of the index */
+    private final List<Entry> entries;
+
+    /** All plugins of the index by their class name */
+    private final Map<String, Entry> entriesByName = new HashMap<String, Entry>();
+
+    /**
+     * @param entries
+     */
+    public PluginIndex(List<Entry> entries) {
+        this.entries = entries;
+
+        for (Entry entry : entries) {
+            this.entriesByName.put(entry.className, entry);
+        }
+    }
+
+    /**
+     * @return All plugins of the index.
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(this.entries);
+    }
+
+    /**
+     * @param className
+     * @return The entry of the given plugin, or null if the index does not list it.
+     */
+    public Entry getEntry(String className) {
+        return this.entriesByName.get(className);
+    }
+
+    /**
+     * @return The binary names of all plugins of the index.
+     */
+    public Collection<String> getClassNames() {
+        final Collection<String> rval = new ArrayList<String>();
+        for (Entry entry : this.entries) {
+            rval.add(entry.className);
+        }
+        return rval;
+    }
+
+    /**
+     * Writes the index to the given stream. The stream is not closed.
+     * 
+     * @param stream
+     * @throws IOException
+     */
+    public void write(OutputStream stream) throws IOException {
+        final Writer writer = new OutputStreamWriter(stream, "UTF-8");
+
+        writer.write(HEADER + "\n");
+        for (Entry entry : this.entries) {
+            writer.write(entry.className + "\t" + join(entry.interfaces) + "\t" + (entry.dependencies == null ? UNKNOWN : join(entry.dependencies)) + "\t" + join(entry.capabilities) + "\n");
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Reads an index from the given stream. The stream is closed afterwards.
+     * 
+     * @param stream
+     * @return The index.
+     * @throws IOException If the stream does not contain a (supported) index.
+     */
+    public static PluginIndex read(InputStream stream) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        final List<Entry> entries = new ArrayList<Entry>();
+
+        try {
+            if (!HEADER.equals(reader.readLine())) throw new IOException("Unsupported plugin index");
+
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0) continue;
+
+                final String[] columns = line.split("\t", -1);
+                if (columns.length != 4 || columns[0].length() == 0)
+                    throw new IOException("Malformed plugin index line: " + line);
+
+                final List<String> dependencies = UNKNOWN.equals(columns[2]) ? null : split(columns[2]);
+                entries.add(new Entry(columns[0], split(columns[1]), dependencies, split(columns[3])));
+            }
+        } finally {
+            reader.close();
+        }
+
+        return new PluginIndex(entries);
+    }
+
+    /**
+     * Formats a dependency for the index.
+     * 
+     * @param type Binary name of the plugin type the dependency waits for.
+     * @param capabilities Capabilities the dependency requires.
+     * @return The dependency, or null if a capability contains a character the index 
+     * uses as separator.
+     */
+    public static String formatDependency(String type, String[] capabilities) {
+        if (capabilities.length == 0) return type;
+
+        final StringBuilder sb = new StringBuilder(type).append('[');
+        for (int i = 0; i < capabilities.length; i++) {
+            for (char c : ",|[]\t\r\n".toCharArray()) {
+                if (capabilities[i].indexOf(c) >= 0) return null;
+            }
+
+            if (i > 0) sb.append('|');
+            sb.append(capabilities[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * @param dependency A dependency of the index.
+     * @return The binary name of the plugin type it waits for.
+     */
+    public static String getDependencyType(String dependency) {
+        final int bracket = dependency.indexOf('[');
+        return (bracket < 0) ? dependency : dependency.substring(0, bracket);
+    }
+
+    /**
+     * @param dependency A dependency of the index.
+     * @return The capabilities it requires.
+     */
+    public static String[] getDependencyCapabilities(String dependency) {
+        final int bracket = dependency.indexOf('[');
+        if (bracket < 0 || !dependency.endsWith("]")) return new String[0];
+
+        return dependency.substring(bracket + 1, dependency.length() - 1).split("\\|");
+    }
+
+    /**
+     * @param values
+     * @return The values separated by commas.
+     */
+    private static String join(List<String> values) {
+        final StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param column
+     * @return The comma separated values of the column.
+     */
+    private static List<String> split(String column) {
+        if (column.length() == 0) return new ArrayList<String>();
+        return new ArrayList<String>(Arrays.asList(column.split(",")));
+    }
+}
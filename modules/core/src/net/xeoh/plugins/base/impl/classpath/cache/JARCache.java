@@ -27,25 +27,32 @@
  */
 package net.xeoh.plugins.base.impl.classpath.cache;
 
-import java.io.EOFException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.net.URI;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.channels.FileLock;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
+
 /**
  * Information about JAR files
  * 
@@ -53,6 +60,59 @@ import java.util.logging.Logger;
  */
 public class JARCache {
 
+    /**
+     * How JARs are identified.
+     * 
+     * @author Ralf Biedert
+     */
+    public static enum HashMode {
+        /** By name and size only, misses changes that keep the size */
+        WEAK,
+
+        /** By path, size and modification time, hashing the central directory if they change */
+        FAST,
+
+        /** By the MD5 of the whole file */
+        STRONG
+    }
+
+    /**
+     * The fingerprint of a file, valid as long as its size and modification time are 
+     * unchanged.
+     * 
+     * @author Ralf Biedert
+     */
+    static class FileStat {
+        /** Size of the file */
+        final long length;
+
+        /** Modification time of the file */
+        final long modified;
+
+        /** The fingerprint */
+        final String fingerprint;
+
+        /**
+         * @param length
+         * @param modified
+         * @param fingerprint
+         */
+        FileStat(long length, long modified, String fingerprint) {
+            this.length = length;
+            this.modified = modified;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @param length
+         * @param modified
+         * @return True if the file still has the given size and modification time.
+         */
+        boolean matches(long length, long modified) {
+            return this.length == length && this.modified == modified;
+        }
+    }
+
     /**
      * Information about a JAR plugin container.
      * 
@@ -61,7 +121,7 @@ public class JARCache {
      */
     public static class JARInformation implements Serializable {
         /** */
-        private static final long serialVersionUID = 6734024814836912079L;
+        private static final long serialVersionUID = 6734024814836912080L;
 
         /** List of valid classes in the jar */
         public List<String> classes = new ArrayList<String>();
@@ -69,15 +129,75 @@ public class JARCache {
         /** List of valid plugins in the jar */
         public Map<String, Collection<String>> subclasses = new HashMap<String, Collection<String>>();
 
-        /** */
+        /** Reflective models of the plugin classes in the jar */
+        public Map<String, PluginClassModel> classModels = new HashMap<String, PluginClassModel>();
+
+        /** When the entry was last used, the least recently used entries are evicted first */
         public long lastAccess = System.currentTimeMillis();
 
-        /** */
+        /** How often the entry was used */
         public int usageCount = 0;
 
         /** Is the contents information valid? */
         public boolean classesValid = false;
 
+        /** Has the entry changed since it was loaded or saved? Set this after modifying it. */
+        public transient boolean changed = true;
+
+        /**
+         * Writes the entry to the cache file.
+         * 
+         * @param out
+         * @throws IOException
+         */
+        void write(JARCacheFormat.Output out) throws IOException {
+            out.writeStrings(this.classes);
+
+            out.writeInt(this.subclasses.size());
+            for (Entry<String, Collection<String>> entry : this.subclasses.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeStrings(entry.getValue());
+            }
+
+            out.writeInt(this.classModels.size());
+            for (PluginClassModel model : this.classModels.values()) {
+                model.write(out);
+            }
+
+            out.writeLong(this.lastAccess);
+            out.writeInt(this.usageCount);
+            out.writeBoolean(this.classesValid);
+        }
+
+        /**
+         * Reads an entry from the cache file.
+         * 
+         * @param in
+         * @return The entry.
+         * @throws IOException
+         */
+        static JARInformation read(JARCacheFormat.Input in) throws IOException {
+            final JARInformation rval = new JARInformation();
+
+            rval.classes = in.readStrings();
+
+            for (int i = in.readInt(); i > 0; i--) {
+                final String key = in.readString();
+                rval.subclasses.put(key, in.readStrings());
+            }
+
+            for (int i = in.readInt(); i > 0; i--) {
+                final PluginClassModel model = new PluginClassModel(in);
+                rval.classModels.put(model.className, model);
+            }
+
+            rval.lastAccess = in.readLong();
+            rval.usageCount = in.readInt();
+            rval.classesValid = in.readBoolean();
+            rval.changed = false;
+
+            return rval;
+        }
     }
 
     /** */
@@ -86,48 +206,60 @@ public class JARCache {
     /** Name of the default cache file */
     private final static String DEFAULT_CACHE_FILE = "jspf.plugin.cache";
 
+    /** Fingerprints computed by this process, by mode and path */
+    private static final ConcurrentMap<String, FileStat> FINGERPRINTS = new ConcurrentHashMap<String, FileStat>();
+
+    /** Accesses more recent than this (in ms) don't have to be saved */
+    private static final long ACCESS_RESOLUTION = 60 * 60 * 1000L;
+
     /** Is the cache enabled */
     private boolean cacheEnabled = false;
 
+    /** Maximal number of entries, 0 for unlimited */
+    private int maxEntries = 1000;
+
+    /** Maximal time in ms since the last access of an entry, 0 for unlimited */
+    private long maxAge = 30 * 24 * 60 * 60 * 1000L;
+
+    /** Counters of this cache */
+    private final JARCacheStatistics statistics = new JARCacheStatistics();
+
     /** maps a fingerprint to a jar information */
     private Map<String, JARInformation> cacheMap = new HashMap<String, JARInformation>();
 
-    /** */
-    private boolean weakMode = false;
+    /** How JARs are identified */
+    private HashMode hashMode = HashMode.STRONG;
+
+    /** Fingerprints of fast mode by path, stored in the cache file */
+    private Map<String, FileStat> fileStats = new HashMap<String, FileStat>();
+
+    /** If a fingerprint was added to fileStats since they were loaded or saved */
+    private boolean fileStatsChanged = false;
 
     private String cachePath;
 
+    /** Modification time of the cache file when we last read or wrote it */
+    private long fileModified = -1;
+
+    /** Length of the cache file when we last read or wrote it */
+    private long fileLength = -1;
+
     /**
-     * Load cache
+     * Load cache. The file is only read if it changed since we last read or wrote it. 
+     * Entries changed in memory but not yet saved are kept.
      */
-    @SuppressWarnings("unchecked")
     public void loadCache() {
         if (!this.cacheEnabled) return;
 
-        final String cacheFile = (this.cachePath == null) ? DEFAULT_CACHE_FILE : this.cachePath;
-
-        try {
-            // lock the lockfile
-            final FileInputStream fis = new FileInputStream(cacheFile);
-            final ObjectInputStream ois = new ObjectInputStream(fis);
-            final Object rval = ois.readObject(); // Loading caches can take very long
-                                                  // (>250ms) for many entries
+        final File cacheFile = getCacheFile();
+        if (isUnchanged(cacheFile)) return;
 
-            ois.close();
+        final Map<String, FileStat> loadedStats = new HashMap<String, FileStat>();
+        final Map<String, JARInformation> loaded = readCache(cacheFile, loadedStats);
+        if (loaded == null) return;
 
-            if (rval != null) {
-                this.cacheMap = (Map<String, JARInformation>) rval;
-            }
-        } catch (EOFException e) {
-            //
-        } catch (final FileNotFoundException e) {
-            // If file was not found, no problem ...
-            // e.printStackTrace();
-        } catch (final IOException e) {
-            e.printStackTrace();
-        } catch (final ClassNotFoundException e) {
-            this.logger.warning("Your JSPF cache is outdated, please delete it. It will be regenerated with the next run. The next exception reflects this, so don't be afraid.");
-            e.printStackTrace();
+        synchronized (this) {
+            merge(loaded, loadedStats);
         }
     }
 
@@ -139,48 +271,323 @@ public class JARCache {
         // Just return a dummy when we are disabled
         if (!this.cacheEnabled) return new JARInformation();
 
-        final File file = new File(uri);
-        final String hash = (this.weakMode) ? generateWeakHash(file) : generateStrongHash(file);
+        final String hash = getFingerprint(new File(uri));
 
         if (hash == null) {
             this.logger.warning("Error generating hash. Caching won't work.");
             return new JARInformation();
         }
 
-        // Create information if not already there.
-        if (!this.cacheMap.containsKey(hash)) {
-            this.cacheMap.put(hash, new JARInformation());
-        }
+        // Locations may be scanned concurrently
+        synchronized (this) {
+            // Create information if not already there.
+            final boolean hit = this.cacheMap.containsKey(hash);
+            if (!hit) {
+                this.cacheMap.put(hash, new JARInformation());
+            }
+
+            this.statistics.recordLookup(hit);
+
+            final JARInformation jarInformation = this.cacheMap.get(hash);
+            final long now = System.currentTimeMillis();
 
-        final JARInformation jarInformation = this.cacheMap.get(hash);
-        jarInformation.lastAccess = System.currentTimeMillis();
-        jarInformation.usageCount++;
-        return jarInformation;
+            // Store the access now and then, so entries in use are not evicted
+            if (now - jarInformation.lastAccess > ACCESS_RESOLUTION) jarInformation.changed = true;
+
+            jarInformation.lastAccess = now;
+            jarInformation.usageCount++;
+            return jarInformation;
+        }
     }
 
     /**
-     * Saves the cache
+     * Saves the cache, if any entry changed. Other processes may share the file, so it 
+     * is locked while we merge their changes and write it. The new content is written 
+     * to a temporary file first, which then replaces the cache file, so readers never 
+     * see a partially written cache.
      */
     public void saveCache() {
-
         if (!this.cacheEnabled) return;
-        String cacheFile = this.cachePath;
-        // String = this.configuration.getConfiguration(getClass(), "cacheFile");
-        if (cacheFile == null) {
-            cacheFile = DEFAULT_CACHE_FILE;
+
+        synchronized (this) {
+            if (!isChanged() && !needsEviction(System.currentTimeMillis())) return;
         }
 
-        try {
-            // lock the lockfile
-            final FileOutputStream fos = new FileOutputStream(cacheFile);
-            final ObjectOutputStream oos = new ObjectOutputStream(fos);
+        final File cacheFile = getCacheFile().getAbsoluteFile();
+
+        // File locks are held by the whole JVM, so threads have to wait here
+        synchronized (JARCache.class) {
+            try {
+                final RandomAccessFile lockFile = new RandomAccessFile(cacheFile.getPath() + ".lock", "rw");
+                try {
+                    final FileLock lock = lockFile.getChannel().lock();
+                    try {
+                        // Somebody else might have written the cache since we read it
+                        if (!isUnchanged(cacheFile)) {
+                            final Map<String, FileStat> loadedStats = new HashMap<String, FileStat>();
+                            final Map<String, JARInformation> loaded = readCache(cacheFile, loadedStats);
+                            if (loaded != null) {
+                                synchronized (this) {
+                                    merge(loaded, loadedStats);
+                                }
+                            }
+                        }
+
+                        final Map<String, JARInformation> snapshot;
+                        final Map<String, FileStat> statsSnapshot;
+                        final List<JARInformation> cleared = new ArrayList<JARInformation>();
+                        final boolean statsCleared;
+                        synchronized (this) {
+                            evict(System.currentTimeMillis());
+                            snapshot = new HashMap<String, JARInformation>(this.cacheMap);
+                            statsSnapshot = new HashMap<String, FileStat>(this.fileStats);
+
+                            // Clear the flags together with the snapshot, so changes made 
+                            // while we write are kept for the next save
+                            for (JARInformation information : snapshot.values()) {
+                                synchronized (information) {
+                                    if (!information.changed) continue;
+
+                                    information.changed = false;
+                                    cleared.add(information);
+                                }
+                            }
+                            statsCleared = this.fileStatsChanged;
+                            this.fileStatsChanged = false;
+                        }
+
+                        try {
+                            writeCache(cacheFile, snapshot, statsSnapshot);
+                        } catch (final IOException e) {
+                            // Nothing was saved, so everything we cleared is still changed
+                            synchronized (this) {
+                                for (JARInformation information : cleared) {
+                                    synchronized (information) {
+                                        information.changed = true;
+                                    }
+                                }
+                                if (statsCleared) this.fileStatsChanged = true;
+                            }
+                            throw e;
+                        }
+                        this.statistics.recordSave(snapshot.size(), cacheFile.length());
+                    } finally {
+                        lock.release();
+                    }
+                } finally {
+                    lockFile.close();
+                }
+            } catch (final IOException e) {
+                this.logger.warning("Unable to save the JSPF cache to " + cacheFile);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return The cache file.
+     */
+    private File getCacheFile() {
+        return new File((this.cachePath == null) ? DEFAULT_CACHE_FILE : this.cachePath);
+    }
+
+    /**
+     * @param cacheFile
+     * @return True if the file did not change since we last read or wrote it.
+     */
+    private boolean isUnchanged(File cacheFile) {
+        return cacheFile.lastModified() == this.fileModified && cacheFile.length() == this.fileLength;
+    }
+
+    /**
+     * @return True if any entry changed since it was loaded or saved.
+     */
+    private boolean isChanged() {
+        if (this.fileStatsChanged) return true;
+        for (JARInformation information : this.cacheMap.values()) {
+            if (information.changed) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param now
+     * @return True if any entry is too old or there are too many entries.
+     */
+    private boolean needsEviction(long now) {
+        if (this.maxEntries > 0 && this.cacheMap.size() > this.maxEntries) return true;
+        if (this.maxAge <= 0) return false;
+
+        for (JARInformation information : this.cacheMap.values()) {
+            if (now - information.lastAccess > this.maxAge) return true;
+        }
+        return false;
+    }
 
-            oos.writeObject(this.cacheMap);
+    /**
+     * Removes all entries that were not accessed within the maximal age, then the least 
+     * recently accessed entries until no more than the maximal number remain. Also 
+     * removes fingerprints of files whose entry is gone.
+     * 
+     * @param now
+     */
+    private void evict(long now) {
+        final int size = this.cacheMap.size();
+
+        if (this.maxAge > 0) {
+            final Iterator<JARInformation> iterator = this.cacheMap.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next().lastAccess > this.maxAge) iterator.remove();
+            }
+        }
+
+        if (this.maxEntries > 0 && this.cacheMap.size() > this.maxEntries) {
+            final List<Entry<String, JARInformation>> entries = new ArrayList<Entry<String, JARInformation>>(this.cacheMap.entrySet());
+            Collections.sort(entries, new Comparator<Entry<String, JARInformation>>() {
+                public int compare(Entry<String, JARInformation> o1,
+                                   Entry<String, JARInformation> o2) {
+                    final long a = o1.getValue().lastAccess, b = o2.getValue().lastAccess;
+                    return a < b ? -1 : (a == b ? 0 : 1);
+                }
+            });
+
+            for (Entry<String, JARInformation> entry : entries.subList(0, entries.size() - this.maxEntries)) {
+                this.cacheMap.remove(entry.getKey());
+            }
+        }
+
+        if (this.cacheMap.size() == size) return;
+        this.statistics.recordEvictions(size - this.cacheMap.size());
+
+        final Iterator<FileStat> iterator = this.fileStats.values().iterator();
+        while (iterator.hasNext()) {
+            if (!this.cacheMap.containsKey(iterator.next().fingerprint)) iterator.remove();
+        }
+    }
+
+    /**
+     * Merges entries read from the cache file into our map. Our entries win if they 
+     * changed, otherwise the file's (which might contain more information) are used.
+     * Our fingerprints are always used, they are at least as recent.
+     * 
+     * @param loaded
+     * @param loadedStats
+     */
+    private void merge(Map<String, JARInformation> loaded, Map<String, FileStat> loadedStats) {
+        for (Entry<String, JARInformation> entry : this.cacheMap.entrySet()) {
+            if (entry.getValue().changed || !loaded.containsKey(entry.getKey()))
+                loaded.put(entry.getKey(), entry.getValue());
+        }
+
+        loadedStats.putAll(this.fileStats);
+
+        this.cacheMap = loaded;
+        this.fileStats = loadedStats;
+    }
+
+    /**
+     * Reads the given cache file and remembers its state.
+     * 
+     * @param cacheFile
+     * @param stats Receives the fingerprints stored in the file.
+     * @return The entries, or null if the file could not be read.
+     */
+    private Map<String, JARInformation> readCache(File cacheFile, Map<String, FileStat> stats) {
+        final long modified = cacheFile.lastModified();
+        final long length = cacheFile.length();
+
+        try {
+            final FileInputStream fis = new FileInputStream(cacheFile);
+            try {
+                final JARCacheFormat.Input in = new JARCacheFormat.Input(new BufferedInputStream(fis, 64 * 1024));
+                final Map<String, JARInformation> rval = new HashMap<String, JARInformation>();
+
+                for (int i = in.readInt(); i > 0; i--) {
+                    final String hash = in.readString();
+                    rval.put(hash, JARInformation.read(in));
+                }
+
+                for (int i = in.readInt(); i > 0; i--) {
+                    final String path = in.readString();
+                    stats.put(path, new FileStat(in.readLong(), in.readLong(), in.readString()));
+                }
+
+                this.fileModified = modified;
+                this.fileLength = length;
+                return rval;
+            } catch (final RuntimeException e) {
+                // Damaged entries that still parse, e.g., with out of range numbers
+                throw new IOException("Corrupt JAR cache file: " + e);
+            } finally {
+                fis.close();
+            }
         } catch (final FileNotFoundException e) {
-            e.printStackTrace();
+            // If file was not found, no problem ...
+            this.fileModified = modified;
+            this.fileLength = length;
         } catch (final IOException e) {
-            e.printStackTrace();
+            // Also happens for caches of older versions, they will just be replaced
+            this.logger.info("Unable to read the JSPF cache (" + e.getMessage() + "). It will be regenerated.");
+            this.fileModified = modified;
+            this.fileLength = length;
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes all entries to a temporary file and moves it over the cache file.
+     * 
+     * @param cacheFile
+     * @param entries
+     * @param stats
+     * @throws IOException
+     */
+    private void writeCache(File cacheFile, Map<String, JARInformation> entries,
+                            Map<String, FileStat> stats) throws IOException {
+        final JARCacheFormat.Output out = new JARCacheFormat.Output();
+
+        out.writeInt(entries.size());
+        for (Entry<String, JARInformation> entry : entries.entrySet()) {
+            out.writeString(entry.getKey());
+
+            // Entries are updated under their own lock while plugins are loaded
+            synchronized (entry.getValue()) {
+                entry.getValue().write(out);
+            }
+        }
+
+        out.writeInt(stats.size());
+        for (Entry<String, FileStat> entry : stats.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeLong(entry.getValue().length);
+            out.writeLong(entry.getValue().modified);
+            out.writeString(entry.getValue().fingerprint);
+        }
+
+        final File tmp = File.createTempFile("." + cacheFile.getName() + ".", ".tmp", cacheFile.getParentFile());
+        try {
+            final FileOutputStream fos = new FileOutputStream(tmp);
+            try {
+                final BufferedOutputStream bos = new BufferedOutputStream(fos, 64 * 1024);
+                out.finish(bos);
+                bos.flush();
+                fos.getFD().sync();
+            } finally {
+                fos.close();
+            }
+
+            // Renaming over an existing file fails on some platforms
+            if (!tmp.renameTo(cacheFile)) {
+                cacheFile.delete();
+                if (!tmp.renameTo(cacheFile)) throw new IOException("Unable to replace " + cacheFile);
+            }
+        } finally {
+            tmp.delete();
         }
+
+        this.fileModified = cacheFile.lastModified();
+        this.fileLength = cacheFile.length();
     }
 
     /**
@@ -198,65 +605,97 @@ public class JARCache {
     }
 
     /**
-     * Generate a hash for the given element.
-     * 
-     * @param element
+     * Returns the fingerprint of the given JAR for the current mode. Fingerprints are 
+     * remembered together with size and modification time of the file, and only 
+     * computed again if either of them changes.
      * 
-     * @return .
+     * @param file
+     * @return The fingerprint, or null if there was an error.
      */
-    @SuppressWarnings("boxing")
-    private String generateStrongHash(final File element) {
-        // Try to generate hash
+    private String getFingerprint(File file) {
+        if (this.hashMode == HashMode.WEAK) return generateWeakHash(file);
 
-        boolean created = false;
+        final String path = getPath(file);
+        final String key = this.hashMode + ":" + path;
+        final long length = file.length();
+        final long modified = file.lastModified();
 
-        try {
-            this.logger.fine("Processing JAR " + element);
+        // Did we see the file in this process (or, in fast mode, an earlier one)?
+        final FileStat known = FINGERPRINTS.get(key);
+        if (known != null && known.matches(length, modified)) {
+            storeFileStat(path, known);
+            return known.fingerprint;
+        }
 
-            final MessageDigest digest = java.security.MessageDigest.getInstance("MD5");
-            final FileInputStream fis = new FileInputStream(element);
+        if (this.hashMode == HashMode.FAST) {
+            synchronized (this) {
+                final FileStat stored = this.fileStats.get(path);
+                if (stored != null && stored.matches(length, modified)) {
+                    FINGERPRINTS.put(key, stored);
+                    return stored.fingerprint;
+                }
+            }
+        }
 
-            // Read Data
-            final byte[] data = new byte[1024 * 1024];
-            int avail = fis.available();
+        final String fingerprint = generateHash(file);
+        if (fingerprint == null) return null;
 
-            // Update hash
-            while (avail > 0) {
-                avail = Math.min(avail, data.length);
+        // Size and time are from before hashing, so a concurrent change is hashed again later
+        final FileStat stat = new FileStat(length, modified, fingerprint);
+        FINGERPRINTS.put(key, stat);
+        storeFileStat(path, stat);
 
-                fis.read(data, 0, avail);
+        return fingerprint;
+    }
 
-                digest.update(data, 0, avail);
-                avail = fis.available();
-            }
+    /**
+     * Stores the fingerprint in the cache file, if we are in fast mode.
+     * 
+     * @param path
+     * @param stat
+     */
+    private synchronized void storeFileStat(String path, FileStat stat) {
+        if (this.hashMode != HashMode.FAST) return;
+        if (this.fileStats.get(path) == stat) return;
 
-            final byte[] hash = digest.digest();
+        this.fileStats.put(path, stat);
+        this.fileStatsChanged = true;
+    }
 
-            // Assemble hash string
-            final StringBuilder sb = new StringBuilder();
-            sb.append("md5:");
-            for (final byte b : hash) {
-                final String format = String.format("%02x", b);
-                sb.append(format);
-            }
+    /**
+     * @param file
+     * @return The canonical path of the file, which identifies it even if it is 
+     * reached through links.
+     */
+    private static String getPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
 
-            fis.close();
+    /**
+     * Generate a hash for the given element, as required by the current mode.
+     * 
+     * @param element
+     * 
+     * @return .
+     */
+    private String generateHash(final File element) {
+        try {
+            this.logger.fine("Processing JAR " + element);
 
-            final String hashValue = sb.toString().substring(0, sb.toString().length());
-            created = true;
+            final String hashValue = (this.hashMode == HashMode.FAST) ? JARFingerprint.fast(element) : JARFingerprint.strong(element);
             this.logger.fine("Hash of " + element + " is " + hashValue);
             return hashValue;
-        } catch (final NoSuchAlgorithmException e) {
-            e.printStackTrace();
         } catch (final FileNotFoundException e) {
             // e.printStackTrace();
         } catch (final IOException e) {
             e.printStackTrace();
-        } finally {
-            if (!created) {
-                this.logger.warning("Error creating hash of " + element);
-            }
         }
+
+        this.logger.warning("Error creating hash of " + element);
         return null;
     }
 
@@ -275,10 +714,19 @@ public class JARCache {
      * @param w
      */
     public void setWeakMode(boolean w) {
-        if (w == true) {
-            this.logger.fine("Weak mode for caching was enabled.");
+        setHashMode(w ? HashMode.WEAK : HashMode.STRONG);
+    }
+
+    /**
+     * Sets how JARs are identified.
+     * 
+     * @param mode
+     */
+    public void setHashMode(HashMode mode) {
+        if (mode != HashMode.STRONG) {
+            this.logger.fine(mode + " mode for caching was enabled.");
         }
-        this.weakMode = w;
+        this.hashMode = mode;
     }
 
     /**
@@ -287,4 +735,30 @@ public class JARCache {
     public void setCachePath(String cachePath) {
         this.cachePath = cachePath;
     }
+
+    /**
+     * Sets the maximal number of entries kept when the cache is saved. The least 
+     * recently used entries are removed first.
+     * 
+     * @param maxEntries The number of entries, 0 for unlimited.
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Sets how long entries are kept after their last use.
+     * 
+     * @param maxAge The time in milliseconds, 0 for unlimited.
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @return Hits, misses and evictions of this cache.
+     */
+    public JARCacheStatistics getStatistics() {
+        return this.statistics;
+    }
 }
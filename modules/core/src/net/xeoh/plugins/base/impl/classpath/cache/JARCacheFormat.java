@@ -0,0 +1,286 @@
+/*
+ * JARCacheFormat.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.classpath.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary format of the JAR cache file. A file starts with {@link #MAGIC} and 
+ * {@link #VERSION}, followed by a table of all strings and the actual data. The data
+ * refers to strings by their index in the table, so class names that appear in many 
+ * entries are only stored (and read) once. Indices and counts are stored with a variable
+ * length, small numbers take a single byte.
+ * 
+ * @author Ralf Biedert
+ */
+public class JARCacheFormat {
+    /** First bytes of every cache file ("JSPF") */
+    public static final int MAGIC = 0x4A535046;
+
+    /** Version of the format, increased whenever it changes */
+    public static final int VERSION = 2;
+
+    /**
+     * Writes data, collecting all strings into the table. Nothing is written to the 
+     * underlying stream before {@link #finish(OutputStream)} is called.
+     * 
+     * @author Ralf Biedert
+     */
+    public static class Output {
+        /** Maps strings to their index in the table */
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        /** Strings in the order they were added */
+        private final List<String> table = new ArrayList<String>();
+
+        /** Buffered data */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+
+        /** Data stream writing into the buffer */
+        private final DataOutputStream data = new DataOutputStream(this.buffer);
+
+        /**
+         * @param value
+         * @throws IOException
+         */
+        public void writeString(String value) throws IOException {
+            if (value == null) {
+                writeInt(0);
+                return;
+            }
+
+            Integer index = this.strings.get(value);
+            if (index == null) {
+                index = Integer.valueOf(this.table.size());
+                this.strings.put(value, index);
+                this.table.add(value);
+            }
+
+            writeInt(index.intValue() + 1);
+        }
+
+        /**
+         * @param values
+         * @throws IOException
+         */
+        public void writeStrings(Collection<String> values) throws IOException {
+            writeInt(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        /**
+         * @param values
+         * @throws IOException
+         */
+        public void writeStrings(String[] values) throws IOException {
+            writeInt(values.length);
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        /**
+         * Writes a non-negative number, seven bits per byte.
+         * 
+         * @param value
+         * @throws IOException
+         */
+        public void writeInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                this.data.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.data.writeByte(value);
+        }
+
+        /**
+         * @param value
+         * @throws IOException
+         */
+        public void writeLong(long value) throws IOException {
+            this.data.writeLong(value);
+        }
+
+        /**
+         * @param value
+         * @throws IOException
+         */
+        public void writeBoolean(boolean value) throws IOException {
+            this.data.writeBoolean(value);
+        }
+
+        /**
+         * Writes header, string table and data to the given stream. The stream is 
+         * not closed.
+         * 
+         * @param stream
+         * @throws IOException
+         */
+        public void finish(OutputStream stream) throws IOException {
+            final DataOutputStream out = new DataOutputStream(stream);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.table.size());
+            for (String string : this.table) {
+                out.writeUTF(string);
+            }
+
+            this.data.flush();
+            this.buffer.writeTo(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads data written by an {@link Output}.
+     * 
+     * @author Ralf Biedert
+     */
+    public static class Input {
+        /** The string table */
+        private final String[] table;
+
+        /** Stream to read data from */
+        private final DataInputStream data;
+
+        /**
+         * Reads the header and the string table from the given stream.
+         * 
+         * @param stream
+         * @throws IOException If the stream does not start with a supported header.
+         */
+        public Input(InputStream stream) throws IOException {
+            this.data = new DataInputStream(stream);
+
+            if (this.data.readInt() != MAGIC) throw new IOException("Not a JAR cache file");
+            if (this.data.readInt() != VERSION) throw new IOException("Unsupported JAR cache version");
+
+            final int size = this.data.readInt();
+            if (size < 0) throw new IOException("Corrupt JAR cache file");
+
+            this.table = new String[size];
+            for (int i = 0; i < this.table.length; i++) {
+                this.table[i] = this.data.readUTF();
+            }
+        }
+
+        /**
+         * @return .
+         * @throws IOException
+         */
+        public String readString() throws IOException {
+            final int index = readInt();
+            if (index == 0) return null;
+            if (index < 0 || index > this.table.length) throw new IOException("Corrupt JAR cache file");
+
+            return this.table[index - 1];
+        }
+
+        /**
+         * @return .
+         * @throws IOException
+         */
+        public List<String> readStrings() throws IOException {
+            final int size = readCount();
+            final List<String> rval = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+                rval.add(readString());
+            }
+            return rval;
+        }
+
+        /**
+         * @return .
+         * @throws IOException
+         */
+        public String[] readStringArray() throws IOException {
+            final String[] rval = new String[readCount()];
+            for (int i = 0; i < rval.length; i++) {
+                rval[i] = readString();
+            }
+            return rval;
+        }
+
+        /**
+         * Reads a number written by {@link Output#writeInt(int)}.
+         * 
+         * @return .
+         * @throws IOException
+         */
+        public int readInt() throws IOException {
+            int rval = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                final int b = this.data.readUnsignedByte();
+                rval |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return rval;
+            }
+            throw new IOException("Corrupt JAR cache file");
+        }
+
+        /**
+         * Reads a number of elements, which must not be negative.
+         * 
+         * @return .
+         * @throws IOException
+         */
+        public int readCount() throws IOException {
+            final int rval = readInt();
+            if (rval < 0) throw new IOException("Corrupt JAR cache file");
+            return rval;
+        }
+
+        /**
+         * @return .
+         * @throws IOException
+         */
+        public long readLong() throws IOException {
+            return this.data.readLong();
+        }
+
+        /**
+         * @return .
+         * @throws IOException
+         */
+        public boolean readBoolean() throws IOException {
+            return this.data.readBoolean();
+        }
+    }
+}
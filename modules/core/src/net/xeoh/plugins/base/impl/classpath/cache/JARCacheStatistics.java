@@ -0,0 +1,126 @@
+/*
+ * JARCacheStatistics.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.classpath.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a {@link JARCache}.
+ * 
+ * @author Ralf Biedert
+ */
+public class JARCacheStatistics {
+    /** Lookups that found an entry */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Lookups that had to create an entry */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Entries removed because they were too old or the cache was full */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Number of entries when the cache was last saved */
+    private volatile int entries;
+
+    /** Size of the cache file in bytes when it was last saved */
+    private volatile long fileSize;
+
+    /**
+     * Records a lookup.
+     * 
+     * @param hit True if an entry was found.
+     */
+    void recordLookup(boolean hit) {
+        if (hit) this.hits.incrementAndGet();
+        else this.misses.incrementAndGet();
+    }
+
+    /**
+     * Records evicted entries.
+     * 
+     * @param count
+     */
+    void recordEvictions(int count) {
+        this.evictions.addAndGet(count);
+    }
+
+    /**
+     * Records the state of a saved cache.
+     * 
+     * @param entries
+     * @param fileSize
+     */
+    void recordSave(int entries, long fileSize) {
+        this.entries = entries;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * @return The number of lookups that found an entry.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return The number of lookups that had to create an entry.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return The number of entries removed because they were too old or the cache 
+     * was full.
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return The number of entries when the cache was last saved.
+     */
+    public int getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * @return The size of the cache file in bytes when it was last saved.
+     */
+    public long getFileSize() {
+        return this.fileSize;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "JARCache [hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", entries=" + getEntries() + ", fileSize=" + getFileSize() + "]";
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * JARFingerprint.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.classpath.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes fingerprints of JAR files. The fast fingerprint only hashes the ZIP central 
+ * directory, which lists the name, size and CRC of every entry and is usually a tiny 
+ * fraction of the file. The strong fingerprint hashes the whole file with MD5.
+ * 
+ * @author Ralf Biedert
+ */
+public class JARFingerprint {
+    /** Signature of the end of central directory record */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /** Size of the end of central directory record without comment */
+    private static final int END_SIZE = 22;
+
+    /** Maximal length of the ZIP file comment */
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    /** FNV-1a parameters */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+    /** Digits for hex strings */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Hashes the central directory of the given JAR (including the record pointing to 
+     * it). If the file has no (supported) central directory, e.g., because it is not 
+     * a ZIP or uses ZIP64, the whole file is hashed instead.
+     * 
+     * @param file
+     * @return The fingerprint.
+     * @throws IOException
+     */
+    public static String fast(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long length = channel.size();
+
+            // The end record is at the very end, followed only by the comment
+            final int tail = (int) Math.min(length, END_SIZE + MAX_COMMENT);
+            final ByteBuffer end = read(channel, length - tail, tail);
+
+            for (int i = tail - END_SIZE; i >= 0; i--) {
+                if (end.getInt(i) != END_SIGNATURE) continue;
+
+                final long size = end.getInt(i + 12) & 0xFFFFFFFFL;
+                final long offset = end.getInt(i + 16) & 0xFFFFFFFFL;
+                if (offset + size > length - tail + i) break;
+
+                long hash = fnv(FNV_OFFSET, read(channel, offset, (int) size));
+                hash = fnv(hash, read(channel, length - tail + i, tail - i));
+
+                return "fast:" + hex(hash) + "@" + length;
+            }
+
+            // No central directory found, hash everything
+            long hash = FNV_OFFSET;
+            for (long position = 0; position < length; position += 1024 * 1024) {
+                hash = fnv(hash, read(channel, position, (int) Math.min(1024 * 1024, length - position)));
+            }
+
+            return "fast:" + hex(hash) + "@" + length;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Hashes the whole file with MD5.
+     * 
+     * @param file
+     * @return The fingerprint.
+     * @throws IOException
+     */
+    public static String strong(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 not available");
+        }
+
+        final InputStream fis = new FileInputStream(file);
+        try {
+            final byte[] data = new byte[64 * 1024];
+            for (int read = fis.read(data); read >= 0; read = fis.read(data)) {
+                digest.update(data, 0, read);
+            }
+        } finally {
+            fis.close();
+        }
+
+        return "md5:" + hex(digest.digest());
+    }
+
+    /**
+     * Reads the given region of the channel.
+     * 
+     * @param channel
+     * @param position
+     * @param size
+     * @return A buffer with the region, in little endian order as used by ZIP.
+     * @throws IOException
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int size)
+                                                                               throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+
+        buffer.flip();
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Continues a 64 bit FNV-1a hash with the remaining bytes of the buffer.
+     * 
+     * @param hash
+     * @param buffer
+     * @return .
+     */
+    private static long fnv(long hash, ByteBuffer buffer) {
+        final byte[] data = buffer.array();
+        final int end = buffer.arrayOffset() + buffer.limit();
+
+        for (int i = buffer.arrayOffset() + buffer.position(); i < end; i++) {
+            hash ^= data[i] & 0xFF;
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * @param value
+     * @return The value as hex string.
+     */
+    private static String hex(long value) {
+        final char[] rval = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            rval[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(rval);
+    }
+
+    /**
+     * @param bytes
+     * @return The bytes as hex string.
+     */
+    private static String hex(byte[] bytes) {
+        final char[] rval = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            rval[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            rval[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(rval);
+    }
+}
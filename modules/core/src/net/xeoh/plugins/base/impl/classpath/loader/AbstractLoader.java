@@ -32,26 +32,47 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.PluginManager;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import net.xeoh.plugins.base.annotations.configuration.ConfigurationFile;
 import net.xeoh.plugins.base.annotations.configuration.IsDisabled;
+import net.xeoh.plugins.base.annotations.configuration.IsLazy;
 import net.xeoh.plugins.base.impl.PluginManagerImpl;
 import net.xeoh.plugins.base.impl.classpath.ClassPathManager;
+import net.xeoh.plugins.base.impl.classpath.PluginIndex;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCache.JARInformation;
 import net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation;
+import net.xeoh.plugins.base.impl.classpath.locator.locations.JARClasspathLocation;
+import net.xeoh.plugins.base.impl.registry.DependencyResolver;
 import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation;
 import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
 import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.PluginClassStatus;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
 import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginStatus;
 import net.xeoh.plugins.base.impl.registry.PluginRegistry;
+import net.xeoh.plugins.base.impl.spawning.LazyPluginHandler.LazyPlugin;
 import net.xeoh.plugins.base.impl.spawning.SpawnResult;
 import net.xeoh.plugins.base.impl.spawning.Spawner;
 import net.xeoh.plugins.base.options.AddPluginsFromOption;
-import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
+import net.xeoh.plugins.base.options.addpluginsfrom.OptionParallelSpawning;
 import net.xeoh.plugins.base.util.PluginConfigurationUtil;
 
 /**
@@ -90,14 +111,123 @@ public abstract class AbstractLoader {
 
     /**
      * Tries to load a class from a given source. If it is a plugin, it will be
-     * registered.
+     * registered and spawned as soon as possible.
      *
      * @param location
      * @param name
      */
-    @SuppressWarnings({ "unchecked", "boxing" })
     protected void tryToLoadClassAsPlugin(AbstractClassPathLocation location,
                                           final String name) {
+        registerPluginClass(location, name);
+
+        // We always try to load pending classes ...
+        processPending();
+    }
+
+    /**
+     * Spawns all classes registered so far (second phase of loading a batch of 
+     * candidates, after all of them were registered by {@link #registerPluginClass}).
+     *
+     * @param parallel If not null, plugins are spawned concurrently.
+     */
+    protected void spawnPending(OptionParallelSpawning parallel) {
+        if (parallel == null) processPending();
+        else processPendingInParallel(parallel.getThreads());
+    }
+
+    /**
+     * Registers the given locations and finds the plugin candidates of each. Locations 
+     * are scanned concurrently by up to <code>classpath.scan.threads</code> threads (see
+     * {@link PluginManager}), registering the candidates is left to the caller.
+     *
+     * @param locations The locations to scan.
+     * @param prefix Only classes whose name starts with this prefix are candidates (empty for all).
+     * @return The candidates of each location, in the order of the locations.
+     */
+    protected Map<AbstractClassPathLocation, Collection<String>> scanLocations(Collection<AbstractClassPathLocation> locations,
+                                                                               final String prefix) {
+        final ClassPathManager classPathManager = this.pluginManager.getClassPathManager();
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.pluginManager.getPluginConfiguration());
+        final Map<AbstractClassPathLocation, Collection<String>> rval = new LinkedHashMap<AbstractClassPathLocation, Collection<String>>();
+
+        // Realms must exist before anything is scanned
+        for (AbstractClassPathLocation location : locations) {
+            classPathManager.registerLocation(location);
+        }
+
+        final int threads = Math.min(locations.size(), pcu.getInt(PluginManager.class, "classpath.scan.threads", Integer.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        if (threads <= 1) {
+            for (AbstractClassPathLocation location : locations) {
+                rval.put(location, findCandidates(location, prefix));
+            }
+            return rval;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "JSPF Scanner-" + this.counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            final Map<AbstractClassPathLocation, Future<Collection<String>>> futures = new LinkedHashMap<AbstractClassPathLocation, Future<Collection<String>>>();
+            for (final AbstractClassPathLocation location : locations) {
+                futures.put(location, executor.submit(new Callable<Collection<String>>() {
+                    public Collection<String> call() throws Exception {
+                        return findCandidates(location, prefix);
+                    }
+                }));
+            }
+
+            for (Entry<AbstractClassPathLocation, Future<Collection<String>>> entry : futures.entrySet()) {
+                try {
+                    rval.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    this.logger.warning("Unable to scan " + entry.getKey().getToplevelLocation());
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            this.logger.warning("Interrupted while scanning the classpath.");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+
+        return rval;
+    }
+
+    /**
+     * Finds the plugin candidates of a single location. Might be called concurrently 
+     * for different locations.
+     *
+     * @param location The location to scan, already registered.
+     * @param prefix Prefix of the candidates' names (empty for all).
+     * @return The names of all candidate classes.
+     */
+    protected Collection<String> findCandidates(AbstractClassPathLocation location,
+                                                String prefix) {
+        final Collection<String> candidates = this.pluginManager.getClassPathManager().findPluginImplementations(location, prefix);
+
+        this.logger.finer("Found " + candidates.size() + " candidates.");
+        return candidates;
+    }
+
+    /**
+     * Tries to load a class from a given source. If it is a plugin, it will be
+     * registered, but not spawned.
+     *
+     * @param location
+     * @param name
+     */
+    @SuppressWarnings({ "unchecked", "boxing" })
+    protected void registerPluginClass(AbstractClassPathLocation location,
+                                       final String name) {
         this.logger.finest("Trying to load " + name + " as a plugin.");
 
         // Obtain some shared objects
@@ -184,15 +314,15 @@ public abstract class AbstractLoader {
                 }
             }
 
-            // Obtain dependencies
-            metaInformation.dependencies = spawner.getDependencies((Class<? extends Plugin>) possiblePlugin);
+            // Reuse the annotated members we found the last time, if any
+            useCachedClassModel(location, (Class<? extends Plugin>) possiblePlugin);
 
-            // If the class has unfulfilled dependencies, add it to our list.
-            if (metaInformation.dependencies.size() == 0) {
-                metaInformation.pluginClassStatus = PluginClassStatus.SPAWNABLE;
-            } else {
-                metaInformation.pluginClassStatus = PluginClassStatus.CONTAINS_UNRESOLVED_DEPENDENCIES;
-            }
+            // Obtain dependencies (from the JAR's index, if it has them) and let the 
+            // resolver decide when we can spawn it
+            metaInformation.dependencies = getIndexedDependencies(location, name);
+            if (metaInformation.dependencies == null)
+                metaInformation.dependencies = spawner.getDependencies((Class<? extends Plugin>) possiblePlugin);
+            pluginRegistry.getDependencyResolver().addClass((Class<? extends Plugin>) possiblePlugin, metaInformation);
         } catch (final ClassNotFoundException e) {
             e.printStackTrace();
             this.logger.warning("ClassNotFoundException. Unable to inspect class " + name + " although it appears to be one.");
@@ -203,114 +333,198 @@ public abstract class AbstractLoader {
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
-
-        // We always try to load pending classes ...
-        processPending();
     }
 
     /**
-     * Try to load a pending class.
+     * Returns the dependencies of a class as recorded in the plugin index of its JAR, 
+     * so we don't have to inspect the class for them.
+     * 
+     * @param location
+     * @param name
+     * @return The dependencies, or null if the index does not know them.
      */
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    protected void processPending() {
+    @SuppressWarnings("unchecked")
+    private Collection<Dependency> getIndexedDependencies(AbstractClassPathLocation location,
+                                                          String name) {
+        if (!(location instanceof JARClasspathLocation)) return null;
 
-        // Obtain shared objects
-        final PluginRegistry pluginRegistry = this.pluginManager.getPluginRegistry();
-        final Spawner spawner = this.pluginManager.getSpawner();
+        final PluginIndex index = ((JARClasspathLocation) location).getPluginIndex();
+        if (index == null) return null;
 
-        // All classes we want to spawn
-        final Collection<Class<? extends Plugin>> toSpawn = new ArrayList<Class<? extends Plugin>>();
-        toSpawn.addAll(pluginRegistry.getPluginClassesWithStatus(PluginClassStatus.CONTAINS_UNRESOLVED_DEPENDENCIES));
-        toSpawn.addAll(pluginRegistry.getPluginClassesWithStatus(PluginClassStatus.SPAWNABLE));
+        final PluginIndex.Entry entry = index.getEntry(name);
+        if (entry == null || entry.dependencies == null) return null;
 
-        // Check if there is work to do.
-        if (toSpawn.size() == 0) return;
+        final Collection<Dependency> rval = new ArrayList<Dependency>();
+        try {
+            for (String dependency : entry.dependencies) {
+                final Dependency d = new Dependency();
+                d.pluginClass = (Class<? extends Plugin>) this.pluginManager.getClassPathManager().loadClass(location, PluginIndex.getDependencyType(dependency));
+                d.capabilites = PluginIndex.getDependencyCapabilities(dependency);
+                rval.add(d);
+            }
+        } catch (final ClassNotFoundException e) {
+            this.logger.fine("Unable to load indexed dependency of " + name + ", inspecting the class instead");
+            return null;
+        }
 
-        boolean loopAgain;
+        return rval;
+    }
 
-        do {
-            // Classes we want to spawn
-            final Collection<Class<? extends Plugin>> spawned = new ArrayList<Class<? extends Plugin>>();
+    /**
+     * Spawns all pending classes whose dependencies are resolved, including those 
+     * becoming resolved by the plugins spawned here.
+     */
+    protected void processPending() {
+        final PluginRegistry pluginRegistry = this.pluginManager.getPluginRegistry();
+        final DependencyResolver resolver = pluginRegistry.getDependencyResolver();
 
-            // Reset hasLoaded flag
-            loopAgain = false;
+        Class<? extends Plugin> c;
+        while ((c = resolver.nextSpawnable()) != null) {
+            this.logger.fine("Class found as SPAWNABLE. Trying to spawn it now " + c);
 
-            // Check all known classes ...
-            for (final Class c : toSpawn) {
-                this.logger.fine("Trying to load pending " + c);
+            //
+            // The magic line: spawn it.
+            //
+            hookSpawnResult(c, pluginRegistry.getMetaInformationFor(c), spawn(c));
+        }
+    }
 
-                final PluginClassMetaInformation metaInformation = pluginRegistry.getMetaInformationFor(c);
+    /**
+     * Makes the spawner use the class model stored in the JAR cache, or stores the model 
+     * in the cache if there is none yet (or it is outdated).
+     * 
+     * @param location
+     * @param c
+     */
+    private void useCachedClassModel(AbstractClassPathLocation location,
+                                     Class<? extends Plugin> c) {
+        if (!(location instanceof JARClasspathLocation)) return;
 
-                // If the class is spawnable, spawn it ...
-                if (metaInformation.pluginClassStatus == PluginClassStatus.SPAWNABLE) {
-                    this.logger.fine("Class found as SPAWNABLE. Trying to spawn it now " + c);
+        final JARInformation cacheEntry = ((JARClasspathLocation) location).getCacheEntry();
+        if (cacheEntry == null) return;
 
-                    //
-                    // The magic line: spawn it.
-                    //
-                    final SpawnResult p = spawner.spawnPlugin(c);
+        final Spawner spawner = this.pluginManager.getSpawner();
+        final PluginClassModel cached = cacheEntry.classModels.get(c.getName());
+        if (cached != null && spawner.addClassModel(c, cached)) return;
 
-                    // In case we were successful ...
-                    if (p != null && p.metaInformation.pluginStatus != PluginStatus.FAILED) {
+        synchronized (cacheEntry) {
+            cacheEntry.classModels.put(c.getName(), spawner.getClassModel(c));
+            cacheEntry.changed = true;
+        }
+    }
 
-                        // Link the parent class meta information
-                        p.metaInformation.classMeta = metaInformation;
+    /**
+     * Hooks the result of a spawn attempt and updates the status of its class.
+     * 
+     * @param c The class that was spawned.
+     * @param metaInformation The meta information of the class.
+     * @param p The result of the spawn.
+     * @return True if the spawn was successful.
+     */
+    private boolean hookSpawnResult(Class<? extends Plugin> c,
+                                    PluginClassMetaInformation metaInformation,
+                                    SpawnResult p) {
+        if (p == null || p.metaInformation.pluginStatus == PluginStatus.FAILED) {
+            // This case is bad ...
+            this.logger.warning("Failed to spawn class  " + c);
+            metaInformation.pluginClassStatus = PluginClassStatus.FAILED;
+            return false;
+        }
 
-                        // Check if the class is active or only lazy spawned
-                        if (p.metaInformation.pluginStatus == PluginStatus.ACTIVE) {
-                            // Mark the class a spawned
-                            metaInformation.pluginClassStatus = PluginClassStatus.SPAWNED;
-                            spawned.add(c);
+        // Link the parent class meta information
+        p.metaInformation.classMeta = metaInformation;
 
-                            this.pluginManager.hookPlugin(p);
-                        }
+        // Mark the class as spawned, or lazy spawned if we only have a placeholder
+        if (p.plugin instanceof LazyPlugin) metaInformation.pluginClassStatus = PluginClassStatus.LAZY_SPAWNED;
+        else metaInformation.pluginClassStatus = PluginClassStatus.SPAWNED;
 
-                        // Lazy spawn ...
-                        if (p.metaInformation.pluginStatus == PluginStatus.SPAWNED) {
-                            metaInformation.pluginClassStatus = PluginClassStatus.LAZY_SPAWNED;
-                            throw new IllegalStateException("Lazy spawning not supported yet!");
-                        }
+        this.pluginManager.hookPlugin(p);
+        return true;
+    }
 
-                        // And loop once more.
-                        loopAgain = true;
-                        break;
-                    }
+    /**
+     * Spawns all pending classes concurrently. A class is spawned once all plugins 
+     * it depends on have been hooked, and plugins are hooked one after another 
+     * in the thread calling this method, so they are still added in a valid 
+     * dependency order. 
+     * 
+     * @param threads Number of threads to spawn plugins with.
+     */
+    protected void processPendingInParallel(int threads) {
+        final PluginRegistry pluginRegistry = this.pluginManager.getPluginRegistry();
+        final DependencyResolver resolver = pluginRegistry.getDependencyResolver();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CompletionService<SpawnResult> completion = new ExecutorCompletionService<SpawnResult>(executor);
+        final Map<Future<SpawnResult>, Class<? extends Plugin>> running = new HashMap<Future<SpawnResult>, Class<? extends Plugin>>();
 
-                    // This case is bad ...
-                    this.logger.warning("Failed to spawn class  " + c);
-                    metaInformation.pluginClassStatus = PluginClassStatus.FAILED;
+        try {
+            while (true) {
+                // Start all classes that can be spawned right now
+                Class<? extends Plugin> c;
+                while ((c = resolver.nextSpawnable()) != null) {
+                    submitSpawn(c, completion, running);
                 }
 
-                // Check if we can switch the class to SPAWNABLE
-                if (metaInformation.pluginClassStatus == PluginClassStatus.CONTAINS_UNRESOLVED_DEPENDENCIES) {
-                    this.logger.fine("Trying to solve dependencies for class " + c);
-                    boolean resolvedAll = true;
+                if (running.size() == 0) break;
 
-                    // Check all dependencies
-                    for (Dependency d : metaInformation.dependencies) {
-                        if (d.isOptional) {
-                            this.logger.finest("Skipping dependency as optional " + d.pluginClass);
-                            continue;
-                        }
+                // Hook the next plugin, which might release its dependents
+                final Future<SpawnResult> future = completion.take();
+                c = running.remove(future);
 
-                        if (this.pluginManager.getPlugin(d.pluginClass, new OptionCapabilities(d.capabilites)) == null) {
-                            resolvedAll = false;
-                        }
+                SpawnResult p = null;
+                try {
+                    p = future.get();
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
 
-                    }
+                hookSpawnResult(c, pluginRegistry.getMetaInformationFor(c), p);
+            }
+        } catch (InterruptedException e) {
+            this.logger.warning("Interrupted while spawning plugins in parallel.");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
 
-                    // Nice. So this class will be spawned in one of the next rounds ...
-                    if (resolvedAll) {
-                        metaInformation.pluginClassStatus = PluginClassStatus.SPAWNABLE;
-                        loopAgain = true;
-                        break;
-                    }
-                }
+    /**
+     * Submits a class for spawning.
+     * 
+     * @param c
+     * @param completion
+     * @param running
+     */
+    private void submitSpawn(final Class<? extends Plugin> c,
+                             CompletionService<SpawnResult> completion,
+                             Map<Future<SpawnResult>, Class<? extends Plugin>> running) {
+        this.logger.fine("Spawning " + c + " in parallel");
+
+        running.put(completion.submit(new Callable<SpawnResult>() {
+            public SpawnResult call() throws Exception {
+                return spawn(c);
             }
+        }), c);
+    }
 
-            // Remove all spawned from the list (not really necessary, is it?)
-            toSpawn.removeAll(spawned);
+    /**
+     * Spawns the given class, or only registers a placeholder for it if it should be 
+     * spawned lazily.
+     * 
+     * @param c The class to spawn.
+     * @return The result of the spawn.
+     */
+    SpawnResult spawn(Class<? extends Plugin> c) {
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.pluginManager.getPluginConfiguration());
+        final Spawner spawner = this.pluginManager.getSpawner();
+
+        final boolean lazyByDefault = pcu.getBoolean(PluginManager.class, "spawn.lazy", false);
+        if (c.getAnnotation(IsLazy.class) != null || pcu.getBoolean(c, "plugin.lazy", lazyByDefault)) {
+            final SpawnResult placeholder = spawner.spawnLazyPlugin(c);
+            if (placeholder != null) return placeholder;
+        }
 
-        } while (loopAgain && toSpawn.size() > 0);
+        return spawner.spawnPlugin(c);
     }
 }
@@ -32,14 +32,15 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.util.Collection;
+import java.util.Map.Entry;
 
-import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.impl.PluginManagerImpl;
-import net.xeoh.plugins.base.impl.classpath.ClassPathManager;
 import net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation;
 import net.xeoh.plugins.base.impl.classpath.locator.ClassPathLocator;
 import net.xeoh.plugins.base.impl.classpath.locator.locations.JARClasspathLocation;
 import net.xeoh.plugins.base.options.AddPluginsFromOption;
+import net.xeoh.plugins.base.options.addpluginsfrom.OptionParallelSpawning;
+import net.xeoh.plugins.base.util.OptionUtils;
 
 /**
  * @author rb
@@ -102,41 +103,50 @@ public class FileLoader extends AbstractLoader {
             }
 
             // Here we go
-            locateAllPluginsAt(root);
+            locateAllPluginsAt(root, options);
             return;
         }
     }
 
+    /**
+     * Uses the list of plugins predefined by a JAR, if there is one.
+     * 
+     * @see net.xeoh.plugins.base.impl.classpath.loader.AbstractLoader#findCandidates(net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation, java.lang.String)
+     */
+    @Override
+    protected Collection<String> findCandidates(AbstractClassPathLocation location,
+                                                String prefix) {
+        // Check if it has a list of plugins
+        if (location instanceof JARClasspathLocation) {
+            final Collection<String> predefined = ((JARClasspathLocation) location).getPredefinedPluginList();
+            if (predefined != null) return predefined;
+        }
+
+        // Add all found files ... if we have no predefined list
+        return super.findCandidates(location, prefix);
+    }
+
     /**
      * Given a top level directory, we locate all classpath locations and load all plugins
      * we find.
      * 
      * @param root The top level to start from.
+     * @param options The options passed to addPluginsFrom().
      */
-    void locateAllPluginsAt(File root) {
-        final ClassPathManager manager = this.pluginManager.getClassPathManager();
-        final ClassPathLocator locator = manager.getLocator();
+    void locateAllPluginsAt(File root, AddPluginsFromOption[] options) {
+        final ClassPathLocator locator = this.pluginManager.getClassPathManager().getLocator();
 
         final Collection<AbstractClassPathLocation> locations = locator.findBelow(root.toURI());
-        for (AbstractClassPathLocation location : locations) {
-            manager.registerLocation(location);
-
-            Collection<String> subclasses = null;
-
-            // Check if it has a list of plugins
-            if (location instanceof JARClasspathLocation) {
-                final JARClasspathLocation jarLocation = (JARClasspathLocation) location;
-                subclasses = jarLocation.getPredefinedPluginList();
-            }
-
-            // Add all found files ... if we have no predefined list
-            if (subclasses == null)
-                subclasses = manager.findSubclassesFor(location, Plugin.class);
+        final OptionParallelSpawning parallel = new OptionUtils<AddPluginsFromOption>(options).get(OptionParallelSpawning.class);
 
-            // Try to load them
-            for (String string : subclasses) {
-                tryToLoadClassAsPlugin(location, string);
+        // Scan all locations, then register their candidates one after another
+        for (Entry<AbstractClassPathLocation, Collection<String>> entry : scanLocations(locations, "").entrySet()) {
+            for (String string : entry.getValue()) {
+                registerPluginClass(entry.getKey(), string);
             }
         }
+
+        // Spawn everything we registered at once
+        spawnPending(parallel);
     }
 }
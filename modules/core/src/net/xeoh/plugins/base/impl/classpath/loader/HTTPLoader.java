@@ -83,7 +83,7 @@ public class HTTPLoader extends FileLoader {
                 openStream.close();
 
                 // BIG FAT TODO: Do signature check!!!
-                locateAllPluginsAt(tmpFile);
+                locateAllPluginsAt(tmpFile, options);
                 return;
             } catch (Exception e) {
                 e.printStackTrace();
@@ -29,15 +29,16 @@ package net.xeoh.plugins.base.impl.classpath.loader;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.impl.PluginManagerImpl;
-import net.xeoh.plugins.base.impl.classpath.ClassPathManager;
 import net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation;
 import net.xeoh.plugins.base.impl.classpath.locator.ClassPathLocator;
 import net.xeoh.plugins.base.options.AddPluginsFromOption;
+import net.xeoh.plugins.base.options.addpluginsfrom.OptionParallelSpawning;
+import net.xeoh.plugins.base.util.OptionUtils;
 
 /**
  * A loader to handle classpath://* URIs.
@@ -74,13 +75,18 @@ public class InternalClasspathLoader extends AbstractLoader {
         // Special handler to load files from the local classpath
         if (url.toString().contains("*")) {
             if (url.toString().equals("classpath://*")) {
-                loadAllClasspathPluginClasses(null, options);
+                loadAllClasspathPluginClasses(null, "", options);
             } else {
                 String pattern = url.toString();
                 pattern = pattern.replace("**", ".+");
                 pattern = pattern.replace("*", "[^\\.]*");
                 pattern = pattern.replace("classpath://", "");
-                loadAllClasspathPluginClasses(pattern, options);
+
+                // Everything before the first wildcard must match literally
+                final String expression = url.toString().substring("classpath://".length());
+                final String prefix = expression.substring(0, expression.indexOf('*'));
+
+                loadAllClasspathPluginClasses(Pattern.compile(pattern), prefix, options);
             }
             return;
         }
@@ -109,44 +115,45 @@ public class InternalClasspathLoader extends AbstractLoader {
     /**
      * Load all plugins from the classpath that match a given pattern.
      * 
-     * @param pattern
+     * @param pattern The pattern (or null for all plugins).
+     * @param prefix The literal prefix of all names the pattern matches, classes not 
+     * starting with it are skipped without being inspected.
      * @param options
      */
-    private void loadAllClasspathPluginClasses(String pattern,
+    private void loadAllClasspathPluginClasses(Pattern pattern, String prefix,
                                                AddPluginsFromOption[] options) {
         // Start the classpath search
         this.logger.finer("Starting classpath search with pattern " + pattern);
 
         // Get all classpath locations of the current classpath
-        final ClassPathManager manager = this.pluginManager.getClassPathManager();
-        final ClassPathLocator locator = manager.getLocator();
+        final ClassPathLocator locator = this.pluginManager.getClassPathManager().getLocator();
         final Collection<AbstractClassPathLocation> locations = locator.findInCurrentClassPath(options);
+        final OptionParallelSpawning parallel = new OptionUtils<AddPluginsFromOption>(options).get(OptionParallelSpawning.class);
 
-        // Process all locations
-        for (AbstractClassPathLocation location : locations) {
-            manager.registerLocation(location);
-
-            final Collection<String> candidates = manager.findSubclassesFor(location, Plugin.class);
-
-            this.logger.finer("Found " + candidates.size() + " candidates.");
+        // Scan all locations, then register their candidates one after another
+        for (Entry<AbstractClassPathLocation, Collection<String>> entry : scanLocations(locations, prefix).entrySet()) {
+            final AbstractClassPathLocation location = entry.getKey();
+            final Collection<String> candidates = entry.getValue();
 
             // Check all candidates
             for (String string : candidates) {
 
                 // Either try to add them all, or only those who match a given pattern
-                if (pattern == null) tryToLoadClassAsPlugin(location, string);
+                if (pattern == null) registerPluginClass(location, string);
                 else {
-                    final Pattern p = Pattern.compile(pattern);
-                    final Matcher m = p.matcher(string);
+                    final Matcher m = pattern.matcher(string);
 
                     this.logger.finest(string + " " + m.matches());
                     if (m.matches()) {
-                        tryToLoadClassAsPlugin(location, string);
+                        registerPluginClass(location, string);
                     }
                 }
             }
         }
 
+        // Spawn everything we registered at once
+        spawnPending(parallel);
+
         return;
     }
 
@@ -31,6 +31,7 @@ import static net.jcores.jre.CoreKeeper.$;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.logging.Logger;
 
@@ -152,6 +153,25 @@ public abstract class AbstractClassPathLocation {
      */
     public abstract Collection<String> listToplevelClassNames();
 
+    /**
+     * Lists all top level classes whose name starts with the given prefix. Locations 
+     * override this to skip entries outside the prefix without inspecting them.
+     * 
+     * @param prefix Prefix of the class names, e.g., <code>com.acme.plugins.</code>; 
+     * empty for all classes.
+     * 
+     * @return .
+     */
+    public Collection<String> listToplevelClassNames(String prefix) {
+        if (prefix.length() == 0) return listToplevelClassNames();
+
+        final Collection<String> rval = new ArrayList<String>();
+        for (String name : listToplevelClassNames()) {
+            if (name.startsWith(prefix)) rval.add(name);
+        }
+        return rval;
+    }
+
     /**
      * Lists all entries in this location, no matter if class or file (excluding directories)
      * 
@@ -115,11 +115,23 @@ public class FileClasspathLocation extends AbstractClassPathLocation {
      */
     @Override
     public Collection<String> listToplevelClassNames() {
+        return listToplevelClassNames("");
+    }
+
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation#listToplevelClassNames(java.lang.String)
+     */
+    @Override
+    public Collection<String> listToplevelClassNames(String prefix) {
         final Collection<String> rval = new ArrayList<String>();
         final File toplevel = new File(this.location);
 
+        // Only descend into the package of the prefix
+        final String pkg = prefix.substring(0, prefix.lastIndexOf('.') + 1);
+        final File start = new File(toplevel, pkg.replace('.', File.separatorChar));
+
         try {
-            List<File> fileListing = getFileListing(toplevel, new ArrayList<String>());
+            List<File> fileListing = getFileListing(start, new ArrayList<String>());
             for (File file : fileListing) {
                 // Only accept class files
                 if (!file.getAbsolutePath().endsWith(".class")) continue;
@@ -138,6 +150,8 @@ public class FileClasspathLocation extends AbstractClassPathLocation {
                     name = name.substring(0, name.length() - 6);
                 }
 
+                if (!name.startsWith(prefix)) continue;
+
                 rval.add(name);
             }
         } catch (FileNotFoundException e) {
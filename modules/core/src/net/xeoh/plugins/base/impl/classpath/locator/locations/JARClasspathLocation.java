@@ -39,6 +39,8 @@ import java.util.Enumeration;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+import net.xeoh.plugins.base.impl.classpath.ClassFileInformation;
+import net.xeoh.plugins.base.impl.classpath.PluginIndex;
 import net.xeoh.plugins.base.impl.classpath.cache.JARCache;
 import net.xeoh.plugins.base.impl.classpath.cache.JARCache.JARInformation;
 import net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation;
@@ -50,6 +52,12 @@ import net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation;
  */
 public class JARClasspathLocation extends AbstractClassPathLocation {
 
+    /** The plugin index of this JAR, if any */
+    private PluginIndex pluginIndex;
+
+    /** Set once we tried to read the plugin index */
+    private boolean pluginIndexRead = false;
+
     /**
      * @param cache
      * @param realm
@@ -60,11 +68,14 @@ public class JARClasspathLocation extends AbstractClassPathLocation {
     }
 
     /**
+     * Returns the cache entry of this JAR. The entry is looked up only once, as this 
+     * requires hashing the file.
+     * 
      * @return the location
      */
     public JARInformation getCacheEntry() {
         // If we have a JAR
-        if (getType() == LocationType.JAR && this.cache != null)
+        if (this.cacheEntry == null && getType() == LocationType.JAR && this.cache != null)
             this.cacheEntry = this.cache.getJARInformationFor(this.location);
 
         return this.cacheEntry;
@@ -112,11 +123,64 @@ public class JARClasspathLocation extends AbstractClassPathLocation {
     }
 
     /**
-     * Returns a list of predefined plugins inside this jar. 
+     * Returns a list of predefined plugins inside this jar, as recorded in its 
+     * {@link PluginIndex} at build time. 
      * 
-     * @return .
+     * @return The plugins, or null if the JAR has no (consistent) index.
      */
     public Collection<String> getPredefinedPluginList() {
+        final PluginIndex index = getPluginIndex();
+        if (index == null) return null;
+
+        return index.getClassNames();
+    }
+
+    /**
+     * Returns the plugin index of this JAR. An index is only returned if all the classes 
+     * it lists are present, so a stale index makes us scan the JAR instead. The index 
+     * is read only once.
+     * 
+     * @return The index, or null if there is none or it is inconsistent.
+     */
+    public synchronized PluginIndex getPluginIndex() {
+        if (!this.pluginIndexRead) {
+            this.pluginIndex = readPluginIndex();
+            this.pluginIndexRead = true;
+        }
+
+        return this.pluginIndex;
+    }
+
+    /**
+     * @return The index, or null if there is none or it is inconsistent.
+     */
+    private PluginIndex readPluginIndex() {
+        try {
+            final JarURLConnection connection = (JarURLConnection) new URI("jar:" + this.location + "!/").toURL().openConnection();
+            final JarFile jarFile = connection.getJarFile();
+
+            final JarEntry indexEntry = jarFile.getJarEntry(PluginIndex.LOCATION);
+            if (indexEntry == null) return null;
+
+            final PluginIndex index = PluginIndex.read(jarFile.getInputStream(indexEntry));
+
+            // Check the index matches the JAR
+            for (String name : index.getClassNames()) {
+                if (jarFile.getJarEntry(ClassFileInformation.getInternalName(name) + ".class") != null) continue;
+
+                this.logger.warning("Plugin index of " + this.location + " lists missing class " + name + ", ignoring the index.");
+                return null;
+            }
+
+            return index;
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            this.logger.warning("Unable to read plugin index of " + this.location + ": " + e.getMessage());
+        } catch (URISyntaxException e) {
+            e.printStackTrace();
+        }
+
         return null;
     }
 
@@ -138,6 +202,15 @@ public class JARClasspathLocation extends AbstractClassPathLocation {
         return rval;
     }
 
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation#listToplevelClassNames(java.lang.String)
+     */
+    @Override
+    public Collection<String> listToplevelClassNames(String prefix) {
+        if (prefix.length() == 0) return listToplevelClassNames();
+        return listToplevelClassNamesForURI(this.location, prefix);
+    }
+
     /**
      * Lists all entries for the given JAR.
      * 
@@ -180,7 +253,20 @@ public class JARClasspathLocation extends AbstractClassPathLocation {
      * @return .
      */
     public static Collection<String> listToplevelClassNamesForURI(URI uri) {
+        return listToplevelClassNamesForURI(uri, "");
+    }
+
+    /**
+     * Lists all top level class entries for the given URL whose name starts with the 
+     * given prefix. Other entries are skipped by their name only.
+     * 
+     * @param uri
+     * @param prefix Prefix of the class names (empty for all).
+     * @return .
+     */
+    public static Collection<String> listToplevelClassNamesForURI(URI uri, String prefix) {
         final Collection<String> rval = new ArrayList<String>();
+        final String entryPrefix = prefix.replace('.', '/');
 
         // Ensure we have a proper cache entry ...
         //getCacheEntry();
@@ -200,6 +286,7 @@ public class JARClasspathLocation extends AbstractClassPathLocation {
 
                 // We only search for class file entries
                 if (entry.isDirectory()) continue;
+                if (!entry.getName().startsWith(entryPrefix)) continue;
                 if (!entry.getName().endsWith(".class")) continue;
 
                 String name = entry.getName();
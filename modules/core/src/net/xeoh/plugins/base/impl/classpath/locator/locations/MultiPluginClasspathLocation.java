@@ -149,10 +149,18 @@ public class MultiPluginClasspathLocation extends AbstractClassPathLocation {
      */
     @Override
     public Collection<String> listToplevelClassNames() {
+        return listToplevelClassNames("");
+    }
+
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.base.impl.classpath.locator.AbstractClassPathLocation#listToplevelClassNames(java.lang.String)
+     */
+    @Override
+    public Collection<String> listToplevelClassNames(String prefix) {
         ArrayList<String> rval = new ArrayList<String>();
 
         for (String entry : this.allJARs) {
-            final Collection<String> all = JARClasspathLocation.listToplevelClassNamesForURI(new File(entry).toURI());
+            final Collection<String> all = JARClasspathLocation.listToplevelClassNamesForURI(new File(entry).toURI(), prefix);
             for (String string : all) {
                 this.entryMapping.put(string, entry);
             }
@@ -0,0 +1,252 @@
+/*
+ * DependencyResolver.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.PluginClassStatus;
+
+/**
+ * Decides which registered plugin classes can be spawned. Every class keeps a count of 
+ * its unresolved dependencies, and every dependency is registered under the type it 
+ * waits for. When a plugin becomes active only the dependencies waiting for one of its 
+ * types are checked again, so resolving N classes with E dependencies costs O(N + E) 
+ * instead of rescanning all pending classes after every spawn.
+ * 
+ * @author Ralf Biedert
+ */
+public class DependencyResolver {
+
+    /**
+     * A class waiting for some of its dependencies.
+     */
+    private static class Waiting {
+        /** The class waiting */
+        final Class<? extends Plugin> pluginClass;
+
+        /** Its meta information */
+        final PluginClassMetaInformation metaInformation;
+
+        /** Number of dependencies not resolved yet */
+        int remaining;
+
+        /**
+         * @param pluginClass
+         * @param metaInformation
+         */
+        Waiting(Class<? extends Plugin> pluginClass, PluginClassMetaInformation metaInformation) {
+            this.pluginClass = pluginClass;
+            this.metaInformation = metaInformation;
+        }
+    }
+
+    /**
+     * A dependency of a waiting class (the reverse edge from the type to the class).
+     */
+    private static class Edge {
+        /** The class waiting */
+        final Waiting waiting;
+
+        /** The dependency it waits for */
+        final Dependency dependency;
+
+        /**
+         * @param waiting
+         * @param dependency
+         */
+        Edge(Waiting waiting, Dependency dependency) {
+            this.waiting = waiting;
+            this.dependency = dependency;
+        }
+    }
+
+    /** The registry we check dependencies with */
+    private final PluginRegistry registry;
+
+    /** Plugins that became active since we last looked, filled without locking */
+    private final Queue<Plugin> activated = new ConcurrentLinkedQueue<Plugin>();
+
+    /** Unresolved dependencies by the type they wait for */
+    private final Map<Class<?>, List<Edge>> edges = new HashMap<Class<?>, List<Edge>>();
+
+    /** Number of unresolved dependencies, activations are ignored while there are none */
+    private volatile int unresolved = 0;
+
+    /** Classes all dependencies of which are resolved, in the order they became ready */
+    private final Queue<Class<? extends Plugin>> ready = new LinkedList<Class<? extends Plugin>>();
+
+    /**
+     * @param registry
+     */
+    public DependencyResolver(PluginRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Adds a class whose dependencies are known. The class becomes 
+     * {@link PluginClassStatus#SPAWNABLE} once all of them are resolved, until then it 
+     * {@link PluginClassStatus#CONTAINS_UNRESOLVED_DEPENDENCIES}. 
+     * 
+     * @param pluginClass
+     * @param metaInformation
+     */
+    public synchronized void addClass(Class<? extends Plugin> pluginClass,
+                                      PluginClassMetaInformation metaInformation) {
+        final Waiting waiting = new Waiting(pluginClass, metaInformation);
+
+        // Register first, so an activation racing with the check below is not lost
+        final List<Edge> added = new ArrayList<Edge>();
+        for (Dependency d : metaInformation.dependencies) {
+            if (d.isOptional) continue;
+
+            final Edge edge = new Edge(waiting, d);
+            edgesFor(d.pluginClass).add(edge);
+            added.add(edge);
+            waiting.remaining++;
+        }
+
+        this.unresolved += added.size();
+
+        metaInformation.pluginClassStatus = PluginClassStatus.CONTAINS_UNRESOLVED_DEPENDENCIES;
+
+        for (Edge edge : added) {
+            if (!this.registry.hasActivePluginWith(edge.dependency.pluginClass, edge.dependency.capabilites)) continue;
+
+            this.edges.get(edge.dependency.pluginClass).remove(edge);
+            this.unresolved--;
+            waiting.remaining--;
+        }
+
+        if (waiting.remaining == 0) makeReady(waiting);
+    }
+
+    /**
+     * Tells the resolver a plugin became active (or changed its capabilities). Cheap 
+     * and lock free, the actual work is done by {@link #nextSpawnable()}.
+     * 
+     * @param plugin
+     */
+    public void pluginActivated(Plugin plugin) {
+        if (this.unresolved == 0) return;
+        this.activated.add(plugin);
+    }
+
+    /**
+     * Returns the next class that can be spawned and removes it from the resolver.
+     * 
+     * @return The class, or null if no class is ready.
+     */
+    public synchronized Class<? extends Plugin> nextSpawnable() {
+        Plugin plugin;
+        while ((plugin = this.activated.poll()) != null) {
+            resolve(plugin);
+        }
+
+        return this.ready.poll();
+    }
+
+    /**
+     * Checks all dependencies waiting for one of the types of the given plugin.
+     * 
+     * @param plugin
+     */
+    private void resolve(Plugin plugin) {
+        for (Class<?> type : getTypes(plugin.getClass())) {
+            final List<Edge> list = this.edges.get(type);
+            if (list == null) continue;
+
+            for (final Iterator<Edge> iterator = list.iterator(); iterator.hasNext();) {
+                final Edge edge = iterator.next();
+
+                // Might still lack a capability
+                if (!this.registry.hasActivePluginWith(type, edge.dependency.capabilites)) continue;
+
+                iterator.remove();
+                this.unresolved--;
+                if (--edge.waiting.remaining == 0) makeReady(edge.waiting);
+            }
+
+            if (list.isEmpty()) this.edges.remove(type);
+        }
+    }
+
+    /**
+     * @param waiting
+     */
+    private void makeReady(Waiting waiting) {
+        waiting.metaInformation.pluginClassStatus = PluginClassStatus.SPAWNABLE;
+        this.ready.add(waiting.pluginClass);
+    }
+
+    /**
+     * @param type
+     * @return The list of dependencies waiting for the type.
+     */
+    private List<Edge> edgesFor(Class<?> type) {
+        List<Edge> list = this.edges.get(type);
+        if (list == null) {
+            list = new ArrayList<Edge>();
+            this.edges.put(type, list);
+        }
+        return list;
+    }
+
+    /**
+     * Returns all types a plugin of the given class can be injected as.
+     * 
+     * @param c
+     * @return .
+     */
+    private static Collection<Class<?>> getTypes(Class<?> c) {
+        final Collection<Class<?>> rval = new ArrayList<Class<?>>(PluginRegistry.getPluginInterfaces(c));
+        for (Class<?> current = c; current != null && current != Object.class; current = current.getSuperclass()) {
+            rval.add(current);
+        }
+        return rval;
+    }
+
+    /**
+     * Forgets all classes and activations.
+     */
+    public synchronized void clear() {
+        this.activated.clear();
+        this.edges.clear();
+        this.ready.clear();
+        this.unresolved = 0;
+    }
+}
@@ -60,7 +60,8 @@ public class PluginClassMetaInformation {
         /** Plugin is ready for spawning, should happen soon. */
         SPAWNABLE,
 
-        /** Plugin has been lazy-spawned. ??? */
+        /** A placeholder has been registered for the plugin, which will be spawned 
+         * on first use. */
         LAZY_SPAWNED,
 
         /** Plugin has been spawned. Should be accessible now 
@@ -0,0 +1,542 @@
+/*
+ * PluginClassModel.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.registry;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.xeoh.plugins.base.annotations.Capabilities;
+import net.xeoh.plugins.base.annotations.Thread;
+import net.xeoh.plugins.base.annotations.Thread.ExecutionMode;
+import net.xeoh.plugins.base.annotations.Timer;
+import net.xeoh.plugins.base.annotations.Timer.OverrunPolicy;
+import net.xeoh.plugins.base.annotations.Timer.TimerType;
+import net.xeoh.plugins.base.annotations.events.Init;
+import net.xeoh.plugins.base.annotations.events.PluginLoaded;
+import net.xeoh.plugins.base.annotations.events.Shutdown;
+import net.xeoh.plugins.base.annotations.injections.InjectPlugin;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCacheFormat;
+
+/**
+ * Everything the spawner needs to know about the annotated members of a plugin class. 
+ * The model is obtained by reflection once per class and can be stored in the JAR 
+ * cache; members are then looked up by name instead of scanning the class again.
+ * 
+ * @author Ralf Biedert
+ */
+public class PluginClassModel implements Serializable {
+    /** */
+    private static final long serialVersionUID = -3484215476395437563L;
+
+    /**
+     * An annotated method (or field) of the plugin class.
+     */
+    public static class Member implements Serializable {
+        /** */
+        private static final long serialVersionUID = 4963170937520264735L;
+
+        /** Arguments of parameterless calls, shared so calls don't allocate */
+        private static final Object[] NO_ARGUMENTS = new Object[0];
+
+        /** Name of the member */
+        public final String name;
+
+        /** Names of the parameter types (of the field type for fields) */
+        public final String[] parameterTypes;
+
+        /** The method, once resolved */
+        transient Method method;
+
+        /**
+         * @param method
+         */
+        Member(Method method) {
+            this.name = method.getName();
+            this.parameterTypes = getNames(method.getParameterTypes());
+            this.method = method;
+        }
+
+        /**
+         * @param field
+         */
+        Member(Field field) {
+            this.name = field.getName();
+            this.parameterTypes = new String[] { field.getType().getName() };
+        }
+
+        /**
+         * Reads a member from the cache.
+         * 
+         * @param in
+         * @throws IOException
+         */
+        Member(JARCacheFormat.Input in) throws IOException {
+            this.name = in.readString();
+            this.parameterTypes = in.readStringArray();
+        }
+
+        /**
+         * Writes the member to the cache.
+         * 
+         * @param out
+         * @throws IOException
+         */
+        void write(JARCacheFormat.Output out) throws IOException {
+            out.writeString(this.name);
+            out.writeStrings(this.parameterTypes);
+        }
+
+        /**
+         * @return The annotated method.
+         */
+        public Method getMethod() {
+            return this.method;
+        }
+
+        /**
+         * Calls the parameterless method on the given object. Access checks have been 
+         * disabled when the member was resolved, so they are not repeated here.
+         * 
+         * @param target The object to call the method on.
+         * @return The result of the call.
+         * @throws IllegalAccessException
+         * @throws InvocationTargetException
+         */
+        public Object invoke(Object target) throws IllegalAccessException,
+                                           InvocationTargetException {
+            return this.method.invoke(target, NO_ARGUMENTS);
+        }
+
+        /**
+         * Calls the method with the given argument on the given object.
+         * 
+         * @param target The object to call the method on.
+         * @param argument The argument to pass.
+         * @return The result of the call.
+         * @throws IllegalAccessException
+         * @throws InvocationTargetException
+         */
+        public Object invoke(Object target, Object argument) throws IllegalAccessException,
+                                                            InvocationTargetException {
+            return this.method.invoke(target, new Object[] { argument });
+        }
+
+        /**
+         * Looks up the member in the given class again.
+         * 
+         * @param c
+         * @throws Exception If the member does not exist anymore.
+         */
+        void resolve(Class<?> c) throws Exception {
+            final Class<?>[] types = new Class<?>[this.parameterTypes.length];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = Class.forName(this.parameterTypes[i], false, c.getClassLoader());
+            }
+
+            this.method = c.getMethod(this.name, types);
+            this.method.setAccessible(true);
+        }
+    }
+
+    /**
+     * A field or setter annotated with &#064;{@link InjectPlugin}.
+     */
+    public static class InjectionMember extends Member {
+        /** */
+        private static final long serialVersionUID = -6107269125658624171L;
+
+        /** The required capabilities */
+        public final String[] capabilities;
+
+        /** If the injection is optional */
+        public final boolean isOptional;
+
+        /** If this is a field */
+        public final boolean isField;
+
+        /** The field, once resolved */
+        transient Field field;
+
+        /**
+         * @param method
+         * @param annotation
+         */
+        InjectionMember(Method method, InjectPlugin annotation) {
+            super(method);
+            this.capabilities = annotation.requiredCapabilities();
+            this.isOptional = annotation.isOptional();
+            this.isField = false;
+        }
+
+        /**
+         * @param field
+         * @param annotation
+         */
+        InjectionMember(Field field, InjectPlugin annotation) {
+            super(field);
+            this.capabilities = annotation.requiredCapabilities();
+            this.isOptional = annotation.isOptional();
+            this.isField = true;
+            this.field = field;
+        }
+
+        /**
+         * @param in
+         * @throws IOException
+         */
+        InjectionMember(JARCacheFormat.Input in) throws IOException {
+            super(in);
+            this.capabilities = in.readStringArray();
+            this.isOptional = in.readBoolean();
+            this.isField = in.readBoolean();
+        }
+
+        /* (non-Javadoc)
+         * @see net.xeoh.plugins.base.impl.registry.PluginClassModel.Member#write(net.xeoh.plugins.base.impl.classpath.cache.JARCacheFormat.Output)
+         */
+        @Override
+        void write(JARCacheFormat.Output out) throws IOException {
+            super.write(out);
+            out.writeStrings(this.capabilities);
+            out.writeBoolean(this.isOptional);
+            out.writeBoolean(this.isField);
+        }
+
+        /**
+         * @return The annotated field, or null if this is a setter.
+         */
+        public Field getField() {
+            return this.field;
+        }
+
+        /**
+         * @return The type to inject.
+         */
+        public Class<?> getType() {
+            if (this.isField) return this.field.getType();
+            return this.method.getParameterTypes()[0];
+        }
+
+        /* (non-Javadoc)
+         * @see net.xeoh.plugins.base.impl.registry.PluginClassModel.Member#resolve(java.lang.Class)
+         */
+        @Override
+        void resolve(Class<?> c) throws Exception {
+            if (!this.isField) {
+                super.resolve(c);
+                return;
+            }
+
+            this.field = c.getField(this.name);
+            if (!this.field.getType().getName().equals(this.parameterTypes[0]))
+                throw new NoSuchFieldException(this.name);
+            this.field.setAccessible(true);
+        }
+    }
+
+    /**
+     * A method annotated with &#064;{@link Thread}.
+     */
+    public static class ThreadMember extends Member {
+        /** */
+        private static final long serialVersionUID = 1585209470963475380L;
+
+        /** See {@link Thread#isDaemonic()} */
+        public final boolean isDaemonic;
+
+        /** See {@link Thread#executionMode()} */
+        public final ExecutionMode executionMode;
+
+        /**
+         * @param method
+         * @param annotation
+         */
+        ThreadMember(Method method, Thread annotation) {
+            super(method);
+            this.isDaemonic = annotation.isDaemonic();
+            this.executionMode = annotation.executionMode();
+        }
+
+        /**
+         * @param in
+         * @throws IOException
+         */
+        ThreadMember(JARCacheFormat.Input in) throws IOException {
+            super(in);
+            this.isDaemonic = in.readBoolean();
+            this.executionMode = ExecutionMode.valueOf(in.readString());
+        }
+
+        /* (non-Javadoc)
+         * @see net.xeoh.plugins.base.impl.registry.PluginClassModel.Member#write(net.xeoh.plugins.base.impl.classpath.cache.JARCacheFormat.Output)
+         */
+        @Override
+        void write(JARCacheFormat.Output out) throws IOException {
+            super.write(out);
+            out.writeBoolean(this.isDaemonic);
+            out.writeString(this.executionMode.name());
+        }
+    }
+
+    /**
+     * A method annotated with &#064;{@link Timer}.
+     */
+    public static class TimerMember extends Member {
+        /** */
+        private static final long serialVersionUID = -2298163437092145525L;
+
+        /** See {@link Timer#period()} */
+        public final long period;
+
+        /** See {@link Timer#startupDelay()} */
+        public final long startupDelay;
+
+        /** See {@link Timer#timerType()} */
+        public final TimerType timerType;
+
+        /** See {@link Timer#overrunPolicy()} */
+        public final OverrunPolicy overrunPolicy;
+
+        /**
+         * @param method
+         * @param annotation
+         */
+        TimerMember(Method method, Timer annotation) {
+            super(method);
+            this.period = annotation.period();
+            this.startupDelay = annotation.startupDelay();
+            this.timerType = annotation.timerType();
+            this.overrunPolicy = annotation.overrunPolicy();
+        }
+
+        /**
+         * @param in
+         * @throws IOException
+         */
+        TimerMember(JARCacheFormat.Input in) throws IOException {
+            super(in);
+            this.period = in.readLong();
+            this.startupDelay = in.readLong();
+            this.timerType = TimerType.valueOf(in.readString());
+            this.overrunPolicy = OverrunPolicy.valueOf(in.readString());
+        }
+
+        /* (non-Javadoc)
+         * @see net.xeoh.plugins.base.impl.registry.PluginClassModel.Member#write(net.xeoh.plugins.base.impl.classpath.cache.JARCacheFormat.Output)
+         */
+        @Override
+        void write(JARCacheFormat.Output out) throws IOException {
+            super.write(out);
+            out.writeLong(this.period);
+            out.writeLong(this.startupDelay);
+            out.writeString(this.timerType.name());
+            out.writeString(this.overrunPolicy.name());
+        }
+    }
+
+    /** Name of the class this model describes */
+    public final String className;
+
+    /** Fields and setters to inject into, fields first */
+    public final List<InjectionMember> injections = new ArrayList<InjectionMember>();
+
+    /** &#064;Init methods */
+    public final List<Member> initMethods = new ArrayList<Member>();
+
+    /** &#064;Shutdown methods */
+    public final List<Member> shutdownMethods = new ArrayList<Member>();
+
+    /** &#064;Thread methods */
+    public final List<ThreadMember> threadMethods = new ArrayList<ThreadMember>();
+
+    /** &#064;Timer methods */
+    public final List<TimerMember> timerMethods = new ArrayList<TimerMember>();
+
+    /** &#064;PluginLoaded methods */
+    public final List<Member> pluginLoadedMethods = new ArrayList<Member>();
+
+    /** &#064;Capabilities methods */
+    public final List<Member> capabilitiesMethods = new ArrayList<Member>();
+
+    /**
+     * Reflects over the given class and creates its model.
+     * 
+     * @param c The class to inspect.
+     */
+    public PluginClassModel(Class<?> c) {
+        this.className = c.getName();
+
+        for (final Field field : c.getFields()) {
+            final InjectPlugin annotation = field.getAnnotation(InjectPlugin.class);
+            if (annotation == null) continue;
+
+            // Also turn on extended accessibility, so elements don't have to be public
+            field.setAccessible(true);
+            this.injections.add(new InjectionMember(field, annotation));
+        }
+
+        for (final Method method : c.getMethods()) {
+            if (method.getAnnotations().length == 0) continue;
+
+            method.setAccessible(true);
+
+            final InjectPlugin inject = method.getAnnotation(InjectPlugin.class);
+            if (inject != null) this.injections.add(new InjectionMember(method, inject));
+
+            if (method.getAnnotation(Init.class) != null) this.initMethods.add(new Member(method));
+            if (method.getAnnotation(Shutdown.class) != null) this.shutdownMethods.add(new Member(method));
+            if (method.getAnnotation(PluginLoaded.class) != null) this.pluginLoadedMethods.add(new Member(method));
+            if (method.getAnnotation(Capabilities.class) != null) this.capabilitiesMethods.add(new Member(method));
+
+            final Thread thread = method.getAnnotation(Thread.class);
+            if (thread != null) this.threadMethods.add(new ThreadMember(method, thread));
+
+            final Timer timer = method.getAnnotation(Timer.class);
+            if (timer != null) this.timerMethods.add(new TimerMember(method, timer));
+        }
+    }
+
+    /**
+     * Reads a model from the cache. Its members have to be resolved before use.
+     * 
+     * @param in
+     * @throws IOException
+     */
+    public PluginClassModel(JARCacheFormat.Input in) throws IOException {
+        this.className = in.readString();
+
+        for (int i = in.readInt(); i > 0; i--) {
+            this.injections.add(new InjectionMember(in));
+        }
+        readMembers(in, this.initMethods);
+        readMembers(in, this.shutdownMethods);
+        for (int i = in.readInt(); i > 0; i--) {
+            this.threadMethods.add(new ThreadMember(in));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            this.timerMethods.add(new TimerMember(in));
+        }
+        readMembers(in, this.pluginLoadedMethods);
+        readMembers(in, this.capabilitiesMethods);
+    }
+
+    /**
+     * Writes the model to the cache.
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void write(JARCacheFormat.Output out) throws IOException {
+        out.writeString(this.className);
+
+        write(out, this.injections);
+        write(out, this.initMethods);
+        write(out, this.shutdownMethods);
+        write(out, this.threadMethods);
+        write(out, this.timerMethods);
+        write(out, this.pluginLoadedMethods);
+        write(out, this.capabilitiesMethods);
+    }
+
+    /**
+     * Looks up all members of a model obtained from the cache in the given class.
+     * 
+     * @param c The class the model was created for.
+     * @return True if all members were found, false if the model is outdated.
+     */
+    public boolean resolve(Class<?> c) {
+        if (!this.className.equals(c.getName())) return false;
+
+        try {
+            resolve(c, this.injections);
+            resolve(c, this.initMethods);
+            resolve(c, this.shutdownMethods);
+            resolve(c, this.threadMethods);
+            resolve(c, this.timerMethods);
+            resolve(c, this.pluginLoadedMethods);
+            resolve(c, this.capabilitiesMethods);
+        } catch (Exception e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param c
+     * @param members
+     * @throws Exception
+     */
+    private static void resolve(Class<?> c, List<? extends Member> members) throws Exception {
+        for (Member member : members) {
+            member.resolve(c);
+        }
+    }
+
+    /**
+     * @param out
+     * @param members
+     * @throws IOException
+     */
+    private static void write(JARCacheFormat.Output out, List<? extends Member> members)
+                                                                                     throws IOException {
+        out.writeInt(members.size());
+        for (Member member : members) {
+            member.write(out);
+        }
+    }
+
+    /**
+     * @param in
+     * @param members
+     * @throws IOException
+     */
+    private static void readMembers(JARCacheFormat.Input in, List<Member> members)
+                                                                                throws IOException {
+        for (int i = in.readInt(); i > 0; i--) {
+            members.add(new Member(in));
+        }
+    }
+
+    /**
+     * @param types
+     * @return The names of the given types.
+     */
+    static String[] getNames(Class<?>[] types) {
+        final String[] rval = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            rval[i] = types[i].getName();
+        }
+        return rval;
+    }
+}
@@ -27,13 +27,15 @@
  */
 package net.xeoh.plugins.base.impl.registry;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 
 import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel.Member;
+import net.xeoh.plugins.base.impl.spawning.ManagedThread;
+import net.xeoh.plugins.base.impl.spawning.TimerStatistics;
 
 /**
  * Meta information of the given plugin.
@@ -45,7 +47,7 @@ public class PluginMetaInformation {
     /** Handles PluginLoaded annotations */
     public static class PluginLoadedInformation {
         /** Annotated method */
-        public Method method;
+        public Member member;
 
         /** Base type to call with */
         public Class<? extends Plugin> baseType;
@@ -87,17 +89,20 @@ public class PluginMetaInformation {
     public PluginClassMetaInformation classMeta = null;
 
     /** List of declared threads, managed by the Spawner */
-    public final List<Thread> threads = new ArrayList<Thread>();
+    public final List<ManagedThread> threads = new ArrayList<ManagedThread>();
 
-    /** List of declared timer tasks, managed by the Spawner */
-    public final List<TimerTask> timerTasks = new ArrayList<TimerTask>();
+    /** List of scheduled timer methods, managed by the Spawner */
+    public final List<ScheduledFuture<?>> timerFutures = new ArrayList<ScheduledFuture<?>>();
 
-    /** List of declared timer tasks, managed by the Spawner */
-    public final List<Timer> timers = new ArrayList<Timer>();
+    /** Statistics of the scheduled timer methods, managed by the Spawner */
+    public final List<TimerStatistics> timerStatistics = new ArrayList<TimerStatistics>();
 
     /** Handles plugin loaded information */
     public final List<PluginLoadedInformation> pluginLoadedInformation = new ArrayList<PluginLoadedInformation>();
 
+    /** Capabilities of the plugin, resolved once after initialization (null if unknown) */
+    public Set<String> capabilities = null;
+
     /** Time this pluggable has been spawned. */
     public long spawnTime;
 
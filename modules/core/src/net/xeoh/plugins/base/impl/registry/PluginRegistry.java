@@ -30,9 +30,15 @@ package net.xeoh.plugins.base.impl.registry;
 import static net.jcores.jre.CoreKeeper.$;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -40,9 +46,13 @@ import net.jcores.jre.interfaces.functions.F1;
 import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
 import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.PluginClassStatus;
+import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginStatus;
 
 /**
- * The registry keeps track of all instantiated plugins.
+ * The registry keeps track of all instantiated plugins. Lookups are served from an 
+ * immutable {@link RegistrySnapshot}, which is replaced (copy-on-write) whenever a plugin 
+ * is registered, activated or changes its capabilities. Readers therefore never block and
+ * never see a half-updated index.
  * 
  * @author Ralf Biedert
  */
@@ -54,21 +64,283 @@ public class PluginRegistry {
     /** Stores meta information related to a plugin class */
     private final Map<Class<? extends Plugin>, PluginClassMetaInformation> pluginClassMetaInformation;
 
+    /** The current snapshot, only replaced while holding the lock of this registry */
+    private volatile RegistrySnapshot snapshot;
+
+    /** Lookups (interface to capability keys) known to fail until a matching plugin becomes active */
+    private final Map<Class<?>, Set<String>> unresolvedLookups;
+
+    /** Resolves the dependencies of registered plugin classes */
+    private final DependencyResolver dependencyResolver = new DependencyResolver(this);
+
     /**
      * Creates a new registry
      */
     public PluginRegistry() {
         this.pluginMetaInformation = new ConcurrentHashMap<Plugin, PluginMetaInformation>();
         this.pluginClassMetaInformation = new ConcurrentHashMap<Class<? extends Plugin>, PluginClassMetaInformation>();
+        this.snapshot = new RegistrySnapshot(0, RegistrySnapshot.NO_PLUGINS, new HashMap<Class<?>, Plugin[]>(), new HashMap<String, Plugin[]>());
+        this.unresolvedLookups = new ConcurrentHashMap<Class<?>, Set<String>>();
+    }
+
+    /**
+     * Returns the current snapshot of this registry. The snapshot does not change, 
+     * subsequent modifications of the registry will publish a new one.
+     * 
+     * @return .
+     */
+    public RegistrySnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Returns the current epoch of the registry, see {@link RegistrySnapshot#getEpoch()}.
+     * 
+     * @return .
+     */
+    public long getEpoch() {
+        return this.snapshot.epoch;
     }
 
     /**
-     * Returns all plugins, regardless of their status
+     * Returns all plugins, regardless of their status, in the order they were 
+     * registered. The returned collection is a read-only snapshot.
      * 
      * @return .
      */
     public Collection<Plugin> getAllPlugins() {
-        return this.pluginMetaInformation.keySet();
+        return this.snapshot.getPlugins();
+    }
+
+    /**
+     * Returns all active plugins implementing the given interface, in the order they
+     * became active. The returned collection is a read-only snapshot.
+     * 
+     * @param type The interface to look up.
+     * @return .
+     */
+    public Collection<Plugin> getActivePluginsFor(Class<?> type) {
+        return this.snapshot.getActivePluginsFor(type);
+    }
+
+    /**
+     * Returns all active plugins providing the given capability. The returned collection 
+     * is a read-only snapshot.
+     * 
+     * @param capability The capability to look up.
+     * @return .
+     */
+    public Collection<Plugin> getActivePluginsWithCapability(String capability) {
+        return this.snapshot.getActivePluginsWithCapability(capability);
+    }
+
+    /**
+     * Returns all active plugins implementing the given interface and providing all 
+     * of the given capabilities.
+     * 
+     * @param type The interface to look up.
+     * @param capabilities The required capabilities (may be empty).
+     * @return .
+     */
+    public Collection<Plugin> getActivePluginsWith(Class<?> type, String... capabilities) {
+        final RegistrySnapshot current = this.snapshot;
+        if (capabilities == null || capabilities.length == 0) return current.getActivePluginsFor(type);
+
+        final Plugin[] candidates = getCandidates(current, type, capabilities);
+        final List<Plugin> rval = new ArrayList<Plugin>();
+
+        for (int i = 0; i < candidates.length; i++) {
+            final Plugin plugin = candidates[i];
+
+            if (!type.isInstance(plugin)) continue;
+            if (!hasCapabilities(plugin, capabilities)) continue;
+
+            rval.add(plugin);
+        }
+
+        return rval;
+    }
+
+    /**
+     * Returns the first active plugin implementing the given interface and providing all 
+     * of the given capabilities. Unlike {@link #getActivePluginsWith(Class, String...)} 
+     * this method does not allocate any objects.
+     * 
+     * @param type The interface to look up.
+     * @param capabilities The required capabilities (may be empty).
+     * @return The first matching plugin or <code>null</code>.
+     */
+    public Plugin getFirstActivePluginWith(Class<?> type, String[] capabilities) {
+        final RegistrySnapshot current = this.snapshot;
+
+        // Simple case, no capabilities requested
+        if (capabilities == null || capabilities.length == 0) {
+            final Plugin[] plugins = current.activePluginsFor(type);
+            return plugins.length == 0 ? null : plugins[0];
+        }
+
+        final Plugin[] candidates = getCandidates(current, type, capabilities);
+        for (int i = 0; i < candidates.length; i++) {
+            final Plugin plugin = candidates[i];
+
+            if (!type.isInstance(plugin)) continue;
+            if (!hasCapabilities(plugin, capabilities)) continue;
+
+            return plugin;
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks if there is an active plugin implementing the given interface and providing 
+     * all of the given capabilities. Failed lookups are remembered, so asking again is 
+     * cheap until a plugin implementing the interface becomes active (or changes its 
+     * capabilities). Used while resolving dependencies.
+     * 
+     * @param type The interface to look up.
+     * @param capabilities The required capabilities (may be empty).
+     * @return True if {@link #getFirstActivePluginWith(Class, String[])} would return a plugin.
+     */
+    public boolean hasActivePluginWith(Class<?> type, String[] capabilities) {
+        final String key = getLookupKey(capabilities);
+
+        // Check if we already know this one fails
+        final Set<String> unresolved = this.unresolvedLookups.get(type);
+        if (unresolved != null && unresolved.contains(key)) return false;
+
+        final RegistrySnapshot current = this.snapshot;
+        if (getFirstActivePluginWith(type, capabilities) != null) return true;
+
+        // Only remember the miss if nothing was activated in the meantime
+        synchronized (this) {
+            if (this.snapshot != current) return false;
+
+            Set<String> set = this.unresolvedLookups.get(type);
+            if (set == null) {
+                set = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                this.unresolvedLookups.put(type, set);
+            }
+            set.add(key);
+        }
+
+        return false;
+    }
+
+    /**
+     * Computes an order independent key for the given capabilities.
+     * 
+     * @param capabilities
+     * @return .
+     */
+    private static String getLookupKey(String[] capabilities) {
+        if (capabilities == null || capabilities.length == 0) return "";
+        if (capabilities.length == 1) return capabilities[0];
+
+        final String[] sorted = capabilities.clone();
+        Arrays.sort(sorted);
+
+        final StringBuilder sb = new StringBuilder();
+        for (String capability : sorted) {
+            sb.append(capability);
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns an iterator over all active plugins implementing the given interface and 
+     * providing all of the given capabilities. Matches are determined lazily while 
+     * iterating; the iterator works on the snapshot current at the time this method 
+     * was called and does not support removal.
+     * 
+     * @param type The interface to look up.
+     * @param capabilities The required capabilities (may be empty).
+     * @return .
+     */
+    public Iterator<Plugin> iterateActivePluginsWith(final Class<?> type,
+                                                     final String[] capabilities) {
+        final RegistrySnapshot current = this.snapshot;
+
+        // Simple case, no capabilities requested
+        if (capabilities == null || capabilities.length == 0)
+            return current.getActivePluginsFor(type).iterator();
+
+        final Plugin[] candidates = getCandidates(current, type, capabilities);
+
+        return new Iterator<Plugin>() {
+            private int index = 0;
+
+            private Plugin next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (this.next == null && this.index < candidates.length) {
+                    final Plugin plugin = candidates[this.index++];
+
+                    if (!type.isInstance(plugin)) continue;
+                    if (!hasCapabilities(plugin, capabilities)) continue;
+
+                    this.next = plugin;
+                }
+
+                return this.next != null;
+            }
+
+            @Override
+            public Plugin next() {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                final Plugin rval = this.next;
+                this.next = null;
+                return rval;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns the smallest set of candidates that might match the given type and 
+     * capabilities. The candidates still have to be checked.
+     * 
+     * @param current
+     * @param type
+     * @param capabilities
+     * @return .
+     */
+    private static Plugin[] getCandidates(RegistrySnapshot current, Class<?> type,
+                                          String[] capabilities) {
+        Plugin[] candidates = current.activePluginsFor(type);
+
+        for (int i = 0; i < capabilities.length && candidates.length > 0; i++) {
+            final Plugin[] byCapability = current.activePluginsWithCapability(capabilities[i]);
+            if (byCapability.length < candidates.length) candidates = byCapability;
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Checks if the given plugin has all the given capabilities.
+     * 
+     * @param plugin
+     * @param capabilities
+     * @return .
+     */
+    private boolean hasCapabilities(Plugin plugin, String[] capabilities) {
+        final PluginMetaInformation metaInformation = this.pluginMetaInformation.get(plugin);
+        if (metaInformation == null || metaInformation.capabilities == null) return false;
+
+        for (int i = 0; i < capabilities.length; i++) {
+            if (!metaInformation.capabilities.contains(capabilities[i])) return false;
+        }
+
+        return true;
     }
 
     /**
@@ -94,19 +366,109 @@ public class PluginRegistry {
     /**
      * Remove all plugin references
      */
-    public void clear() {
+    public synchronized void clear() {
         this.pluginClassMetaInformation.clear();
         this.pluginMetaInformation.clear();
+        this.unresolvedLookups.clear();
+        this.dependencyResolver.clear();
+        publish(RegistrySnapshot.NO_PLUGINS, new HashMap<Class<?>, Plugin[]>(), new HashMap<String, Plugin[]>());
     }
 
     /**
-     * Registers a plugin with the given meta information
+     * Registers a plugin with the given meta information. If the plugin is already 
+     * active it will be returned by {@link #getActivePluginsFor(Class)} from now on.
      * 
      * @param plugin
      * @param metaInformation
      */
-    public void registerPlugin(Plugin plugin, PluginMetaInformation metaInformation) {
+    public synchronized void registerPlugin(Plugin plugin, PluginMetaInformation metaInformation) {
         this.pluginMetaInformation.put(plugin, metaInformation);
+
+        final RegistrySnapshot current = this.snapshot;
+        final Plugin[] plugins = append(current.plugins, plugin);
+
+        if (metaInformation.pluginStatus != PluginStatus.ACTIVE) {
+            publish(plugins, current.activePluginsByType, current.activePluginsByCapability);
+            return;
+        }
+
+        final Map<Class<?>, Plugin[]> byType = new HashMap<Class<?>, Plugin[]>(current.activePluginsByType);
+        final Map<String, Plugin[]> byCapability = new HashMap<String, Plugin[]>(current.activePluginsByCapability);
+        index(plugin, byType, byCapability);
+        publish(plugins, byType, byCapability);
+
+        this.dependencyResolver.pluginActivated(plugin);
+    }
+
+    /**
+     * Marks an already registered plugin as active and makes it available for lookups.
+     * 
+     * @param plugin
+     */
+    public synchronized void activatePlugin(Plugin plugin) {
+        final PluginMetaInformation metaInformation = this.pluginMetaInformation.get(plugin);
+        if (metaInformation == null) return;
+
+        metaInformation.pluginStatus = PluginStatus.ACTIVE;
+
+        final RegistrySnapshot current = this.snapshot;
+        final Map<Class<?>, Plugin[]> byType = new HashMap<Class<?>, Plugin[]>(current.activePluginsByType);
+        final Map<String, Plugin[]> byCapability = new HashMap<String, Plugin[]>(current.activePluginsByCapability);
+        index(plugin, byType, byCapability);
+        publish(current.plugins, byType, byCapability);
+
+        this.dependencyResolver.pluginActivated(plugin);
+    }
+
+    /**
+     * Replaces the cached capabilities of the given plugin and updates the capability 
+     * index accordingly.
+     * 
+     * @param plugin
+     * @param capabilities
+     */
+    public synchronized void updateCapabilities(Plugin plugin, Set<String> capabilities) {
+        final PluginMetaInformation metaInformation = this.pluginMetaInformation.get(plugin);
+        if (metaInformation == null) return;
+
+        if (metaInformation.pluginStatus != PluginStatus.ACTIVE) {
+            metaInformation.capabilities = capabilities;
+            return;
+        }
+
+        final RegistrySnapshot current = this.snapshot;
+        final Map<String, Plugin[]> byCapability = new HashMap<String, Plugin[]>(current.activePluginsByCapability);
+
+        unindexCapabilities(plugin, metaInformation.capabilities, byCapability);
+        metaInformation.capabilities = capabilities;
+        indexCapabilities(plugin, metaInformation.capabilities, byCapability);
+        forgetUnresolvedLookups(plugin);
+
+        publish(current.plugins, current.activePluginsByType, byCapability);
+
+        this.dependencyResolver.pluginActivated(plugin);
+    }
+
+    /**
+     * Publishes a new snapshot with the next epoch. Must only be called while holding 
+     * the lock. 
+     * 
+     * @param plugins
+     * @param byType
+     * @param byCapability
+     */
+    private void publish(Plugin[] plugins, Map<Class<?>, Plugin[]> byType,
+                         Map<String, Plugin[]> byCapability) {
+        this.snapshot = new RegistrySnapshot(this.snapshot.epoch + 1, plugins, byType, byCapability);
+    }
+
+    /**
+     * Returns the resolver deciding which registered classes can be spawned.
+     * 
+     * @return .
+     */
+    public DependencyResolver getDependencyResolver() {
+        return this.dependencyResolver;
     }
 
     /**
@@ -137,6 +499,154 @@ public class PluginRegistry {
         return rval;
     }
 
+    /**
+     * Adds the plugin to the given type and capability maps.
+     * 
+     * @param plugin
+     * @param byType
+     * @param byCapability
+     */
+    private void index(Plugin plugin, Map<Class<?>, Plugin[]> byType,
+                       Map<String, Plugin[]> byCapability) {
+        for (Class<?> type : getPluginInterfaces(plugin.getClass())) {
+            byType.put(type, append(byType.get(type), plugin));
+        }
+
+        indexCapabilities(plugin, this.pluginMetaInformation.get(plugin).capabilities, byCapability);
+        forgetUnresolvedLookups(plugin);
+    }
+
+    /**
+     * Drops all remembered failed lookups the given plugin might now satisfy.
+     * 
+     * @param plugin
+     */
+    private void forgetUnresolvedLookups(Plugin plugin) {
+        if (this.unresolvedLookups.isEmpty()) return;
+
+        for (Class<?> type : getPluginInterfaces(plugin.getClass())) {
+            this.unresolvedLookups.remove(type);
+        }
+    }
+
+    /**
+     * Adds the plugin to the capability map under all given capabilities.
+     * 
+     * @param plugin
+     * @param capabilities
+     * @param byCapability
+     */
+    private static void indexCapabilities(Plugin plugin, Collection<String> capabilities,
+                                          Map<String, Plugin[]> byCapability) {
+        if (capabilities == null) return;
+
+        for (String capability : capabilities) {
+            byCapability.put(capability, append(byCapability.get(capability), plugin));
+        }
+    }
+
+    /**
+     * Removes the plugin from the capability map for all given capabilities.
+     * 
+     * @param plugin
+     * @param capabilities
+     * @param byCapability
+     */
+    private static void unindexCapabilities(Plugin plugin, Collection<String> capabilities,
+                                            Map<String, Plugin[]> byCapability) {
+        if (capabilities == null) return;
+
+        for (String capability : capabilities) {
+            final Plugin[] plugins = byCapability.get(capability);
+            if (plugins == null) continue;
+
+            final Plugin[] remaining = remove(plugins, plugin);
+            if (remaining.length == 0) byCapability.remove(capability);
+            else byCapability.put(capability, remaining);
+        }
+    }
+
+    /**
+     * Returns a copy of the given array with the plugin appended, or the array itself if
+     * it already contains the plugin.
+     * 
+     * @param plugins May be null.
+     * @param plugin
+     * @return .
+     */
+    private static Plugin[] append(Plugin[] plugins, Plugin plugin) {
+        if (plugins == null) return new Plugin[] { plugin };
+        if (indexOf(plugins, plugin) >= 0) return plugins;
+
+        final Plugin[] rval = new Plugin[plugins.length + 1];
+        System.arraycopy(plugins, 0, rval, 0, plugins.length);
+        rval[plugins.length] = plugin;
+        return rval;
+    }
+
+    /**
+     * Returns a copy of the given array without the plugin, or the array itself if it 
+     * does not contain the plugin.
+     * 
+     * @param plugins
+     * @param plugin
+     * @return .
+     */
+    private static Plugin[] remove(Plugin[] plugins, Plugin plugin) {
+        final int index = indexOf(plugins, plugin);
+        if (index < 0) return plugins;
+
+        final Plugin[] rval = new Plugin[plugins.length - 1];
+        System.arraycopy(plugins, 0, rval, 0, index);
+        System.arraycopy(plugins, index + 1, rval, index, rval.length - index);
+        return rval;
+    }
+
+    /**
+     * @param plugins
+     * @param plugin
+     * @return The index of the plugin within the array, or -1.
+     */
+    private static int indexOf(Plugin[] plugins, Plugin plugin) {
+        for (int i = 0; i < plugins.length; i++) {
+            if (plugins[i] == plugin) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns all interfaces (including super-interfaces) of the given class and its 
+     * superclasses that derive from {@link Plugin}. 
+     * 
+     * @param c The class to inspect.
+     * @return .
+     */
+    public static Collection<Class<?>> getPluginInterfaces(Class<?> c) {
+        final Set<Class<?>> rval = new LinkedHashSet<Class<?>>();
+
+        for (Class<?> current = c; current != null; current = current.getSuperclass()) {
+            collectPluginInterfaces(current, rval);
+        }
+
+        return rval;
+    }
+
+    /**
+     * Recursively collects all plugin interfaces of the given type.
+     * 
+     * @param c
+     * @param rval
+     */
+    private static void collectPluginInterfaces(Class<?> c, Set<Class<?>> rval) {
+        for (Class<?> i : c.getInterfaces()) {
+            if (!Plugin.class.isAssignableFrom(i)) continue;
+            if (!rval.add(i)) continue;
+
+            collectPluginInterfaces(i, rval);
+        }
+    }
+
     /**
      * Prints a report of this registry.
      */
@@ -158,8 +668,7 @@ public class PluginRegistry {
 
         System.out.println();
         System.out.println(">>> Object Report <<<");
-        final Set<Plugin> keySet2 = this.pluginMetaInformation.keySet();
-        for (Plugin plugin : keySet2) {
+        for (Plugin plugin : this.snapshot.plugins) {
             final PluginMetaInformation meta = this.pluginMetaInformation.get(plugin);
             System.out.println("    " + plugin + " (status:'" + meta.pluginStatus + "')");
         }
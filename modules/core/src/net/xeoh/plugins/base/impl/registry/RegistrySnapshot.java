@@ -0,0 +1,148 @@
+/*
+ * RegistrySnapshot.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.registry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.xeoh.plugins.base.Plugin;
+
+/**
+ * An immutable view of the {@link PluginRegistry} at a given point in time. The registry
+ * publishes a new snapshot with a higher epoch whenever plugins are registered, activated
+ * or change their capabilities. Derived data can therefore be cached together with the 
+ * epoch it was computed for, and only has to be recomputed once the epoch changes. 
+ * 
+ * @author Ralf Biedert
+ */
+public final class RegistrySnapshot {
+    /** Shared empty array */
+    static final Plugin[] NO_PLUGINS = new Plugin[0];
+
+    /** The epoch of this snapshot */
+    final long epoch;
+
+    /** All registered plugins (regardless of their status), in registration order */
+    final Plugin[] plugins;
+
+    /** Maps every plugin interface (and super-interface) to its active instances */
+    final Map<Class<?>, Plugin[]> activePluginsByType;
+
+    /** Maps every capability to the active plugins providing it */
+    final Map<String, Plugin[]> activePluginsByCapability;
+
+    /**
+     * Creates a new snapshot. The passed arrays and maps must not be modified afterwards.
+     * 
+     * @param epoch
+     * @param plugins
+     * @param activePluginsByType
+     * @param activePluginsByCapability
+     */
+    RegistrySnapshot(long epoch, Plugin[] plugins,
+                     Map<Class<?>, Plugin[]> activePluginsByType,
+                     Map<String, Plugin[]> activePluginsByCapability) {
+        this.epoch = epoch;
+        this.plugins = plugins;
+        this.activePluginsByType = activePluginsByType;
+        this.activePluginsByCapability = activePluginsByCapability;
+    }
+
+    /**
+     * Returns the epoch of this snapshot. Epochs only grow, two snapshots with the same 
+     * epoch are identical.
+     * 
+     * @return .
+     */
+    public long getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Returns all plugins registered at the time of this snapshot, regardless of their 
+     * status.
+     * 
+     * @return An unmodifiable list.
+     */
+    public List<Plugin> getPlugins() {
+        return asList(this.plugins);
+    }
+
+    /**
+     * Returns all plugins that were active at the time of this snapshot and implement 
+     * the given interface, in the order they became active.
+     * 
+     * @param type The interface to look up.
+     * @return An unmodifiable list.
+     */
+    public List<Plugin> getActivePluginsFor(Class<?> type) {
+        return asList(activePluginsFor(type));
+    }
+
+    /**
+     * Returns all plugins that were active at the time of this snapshot and provided the 
+     * given capability.
+     * 
+     * @param capability The capability to look up.
+     * @return An unmodifiable list.
+     */
+    public List<Plugin> getActivePluginsWithCapability(String capability) {
+        return asList(activePluginsWithCapability(capability));
+    }
+
+    /**
+     * @param type
+     * @return The array of active plugins for the given type, never null.
+     */
+    Plugin[] activePluginsFor(Class<?> type) {
+        final Plugin[] rval = this.activePluginsByType.get(type);
+        return rval == null ? NO_PLUGINS : rval;
+    }
+
+    /**
+     * @param capability
+     * @return The array of active plugins for the given capability, never null.
+     */
+    Plugin[] activePluginsWithCapability(String capability) {
+        final Plugin[] rval = this.activePluginsByCapability.get(capability);
+        return rval == null ? NO_PLUGINS : rval;
+    }
+
+    /**
+     * Wraps the given array into a read-only list.
+     * 
+     * @param array
+     * @return .
+     */
+    private static List<Plugin> asList(Plugin[] array) {
+        if (array.length == 0) return Collections.emptyList();
+        return Collections.unmodifiableList(Arrays.asList(array));
+    }
+}
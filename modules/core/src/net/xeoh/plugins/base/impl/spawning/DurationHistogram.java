@@ -0,0 +1,132 @@
+/*
+ * DurationHistogram.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.spawning;
+
+/**
+ * A simple, thread safe histogram of durations. Bucket <code>i</code> counts all 
+ * durations of less than <code>2^i</code> nanoseconds (and at least <code>2^(i-1)</code>). 
+ * 
+ * @author Ralf Biedert
+ */
+public class DurationHistogram {
+    /** Number of buckets, enough for all positive long values */
+    public static final int BUCKETS = 64;
+
+    /** Counts per bucket */
+    private final long[] buckets = new long[BUCKETS];
+
+    /** Number of recorded durations */
+    private long count = 0;
+
+    /** Sum of all recorded durations */
+    private long total = 0;
+
+    /** Longest recorded duration */
+    private long maximum = 0;
+
+    /**
+     * Records a duration.
+     * 
+     * @param nanos The duration in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        final long duration = Math.max(0, nanos);
+
+        this.buckets[BUCKETS - Long.numberOfLeadingZeros(duration)]++;
+        this.count++;
+        this.total += duration;
+        this.maximum = Math.max(this.maximum, duration);
+    }
+
+    /**
+     * @return The number of recorded durations.
+     */
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return The longest recorded duration in nanoseconds.
+     */
+    public synchronized long getMaximum() {
+        return this.maximum;
+    }
+
+    /**
+     * @return The mean of all recorded durations in nanoseconds (0 if nothing was recorded).
+     */
+    public synchronized long getMean() {
+        return this.count == 0 ? 0 : this.total / this.count;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, i.e., the upper bound of the 
+     * bucket containing it.
+     * 
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound in nanoseconds (0 if nothing was recorded).
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (this.count == 0) return 0;
+
+        final long rank = (long) Math.ceil(this.count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank && seen > 0) return Math.min(getUpperBound(i), this.maximum);
+        }
+
+        return this.maximum;
+    }
+
+    /**
+     * @return A copy of the counts of all buckets.
+     */
+    public synchronized long[] getBuckets() {
+        return this.buckets.clone();
+    }
+
+    /**
+     * Returns the (exclusive) upper bound of the given bucket.
+     * 
+     * @param bucket
+     * @return The bound in nanoseconds.
+     */
+    public static long getUpperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return "count=" + this.count + ", mean=" + getMean() / 1000 + "us, max=" + this.maximum / 1000 + "us, p90<" + getPercentile(90) / 1000 + "us";
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * LazyPluginHandler.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.spawning;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginStatus;
+import net.xeoh.plugins.diagnosis.local.options.status.OptionInfo;
+
+/**
+ * Backs the placeholder registered for lazily spawned plugins. The placeholder is a 
+ * proxy implementing all interfaces of the plugin class; the plugin itself is spawned 
+ * when it is first requested or first called, and all calls are forwarded to it 
+ * afterwards.
+ * 
+ * @author Ralf Biedert
+ */
+public class LazyPluginHandler implements InvocationHandler {
+    /**
+     * Marks the placeholders of lazily spawned plugins.
+     */
+    public static interface LazyPlugin {
+        // Marker only
+    }
+
+    /** Spawns the plugin */
+    private final Spawner spawner;
+
+    /** The class to spawn */
+    private final Class<? extends Plugin> pluginClass;
+
+    /** The placeholder we back */
+    private Plugin proxy;
+
+    /** The actual plugin, once spawned */
+    private volatile Plugin target;
+
+    /** Set while the plugin is being spawned */
+    private boolean spawning = false;
+
+    /** Set if the plugin failed to spawn or was destroyed before */
+    private boolean unusable = false;
+
+    /**
+     * @param spawner
+     * @param pluginClass
+     */
+    private LazyPluginHandler(Spawner spawner, Class<? extends Plugin> pluginClass) {
+        this.spawner = spawner;
+        this.pluginClass = pluginClass;
+    }
+
+    /**
+     * Creates a placeholder for the given class.
+     * 
+     * @param spawner The spawner to spawn the plugin with.
+     * @param pluginClass The class of the plugin.
+     * @return The placeholder, or null if no placeholder can be created for the class.
+     */
+    static Plugin newPlaceholder(Spawner spawner, Class<? extends Plugin> pluginClass) {
+        final Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+
+        for (Class<?> current = pluginClass; current != null; current = current.getSuperclass()) {
+            for (Class<?> i : current.getInterfaces()) {
+                // Proxies for non-public interfaces would have to live in their package
+                if (!Modifier.isPublic(i.getModifiers())) return null;
+                interfaces.add(i);
+            }
+        }
+
+        interfaces.add(LazyPlugin.class);
+
+        final LazyPluginHandler handler = new LazyPluginHandler(spawner, pluginClass);
+
+        try {
+            handler.proxy = (Plugin) Proxy.newProxyInstance(pluginClass.getClassLoader(), interfaces.toArray(new Class<?>[0]), handler);
+        } catch (IllegalArgumentException e) {
+            spawner.log("lazy/noproxy", new OptionInfo("plugin", pluginClass.getCanonicalName()));
+            return null;
+        }
+
+        return handler.proxy;
+    }
+
+    /**
+     * Returns the handler of the given placeholder.
+     * 
+     * @param plugin
+     * @return The handler, or null if the plugin is no placeholder.
+     */
+    private static LazyPluginHandler getHandler(Plugin plugin) {
+        if (!(plugin instanceof LazyPlugin)) return null;
+        return (LazyPluginHandler) Proxy.getInvocationHandler(plugin);
+    }
+
+    /**
+     * Spawns the plugin behind the given placeholder if it has not been spawned yet. 
+     * Plugins that are no placeholders are not affected. 
+     * 
+     * @param plugin The plugin or placeholder.
+     * @return The plugin passed. 
+     */
+    public static <P extends Plugin> P materialize(P plugin) {
+        final LazyPluginHandler handler = getHandler(plugin);
+        if (handler != null) handler.materialize();
+        return plugin;
+    }
+
+    /**
+     * Returns the object actually implementing the given plugin.
+     * 
+     * @param plugin The plugin or placeholder.
+     * @return The plugin itself if it is no placeholder, the plugin behind it, or null 
+     * if it has not been spawned yet.
+     */
+    public static Plugin getTarget(Plugin plugin) {
+        final LazyPluginHandler handler = getHandler(plugin);
+        if (handler == null) return plugin;
+        return handler.target;
+    }
+
+    /**
+     * Returns the class implementing the given plugin, without spawning it.
+     * 
+     * @param plugin The plugin or placeholder.
+     * @return The class.
+     */
+    public static Class<?> getPluginClass(Plugin plugin) {
+        final LazyPluginHandler handler = getHandler(plugin);
+        if (handler == null) return plugin.getClass();
+        return handler.pluginClass;
+    }
+
+    /**
+     * Prevents the plugin behind the given placeholder from being spawned from now on.
+     * 
+     * @param plugin The plugin or placeholder.
+     * @return See {@link #getTarget(Plugin)}.
+     */
+    static Plugin destroy(Plugin plugin) {
+        final LazyPluginHandler handler = getHandler(plugin);
+        if (handler == null) return plugin;
+
+        synchronized (handler) {
+            handler.unusable = true;
+            return handler.target;
+        }
+    }
+
+    /**
+     * Spawns the plugin if this has not happened yet.
+     * 
+     * @return The plugin, or null if it could not be spawned.
+     */
+    private synchronized Plugin materialize() {
+        if (this.target != null || this.unusable) return this.target;
+
+        if (this.spawning)
+            throw new IllegalStateException("Lazy plugin " + this.pluginClass.getCanonicalName() + " was used during its own initialization.");
+
+        this.spawner.log("lazy/spawn", new OptionInfo("plugin", this.pluginClass.getCanonicalName()));
+        this.spawning = true;
+
+        try {
+            final SpawnResult result = this.spawner.spawnPlugin(this.pluginClass);
+            if (result == null || result.metaInformation.pluginStatus != PluginStatus.ACTIVE) {
+                this.unusable = true;
+                return null;
+            }
+
+            this.target = result.plugin;
+            this.spawner.activateLazyPlugin(this.proxy, result);
+        } finally {
+            this.spawning = false;
+        }
+
+        return this.target;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        // Identity of the placeholder must not depend on the plugin
+        if (method.getDeclaringClass() == Object.class) {
+            final String name = method.getName();
+
+            if ("equals".equals(name)) return Boolean.valueOf(proxy == args[0]);
+            if ("hashCode".equals(name)) return Integer.valueOf(System.identityHashCode(proxy));
+            if ("toString".equals(name) && this.target == null)
+                return this.pluginClass.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+
+        final Plugin plugin = materialize();
+        if (plugin == null)
+            throw new IllegalStateException("Lazy plugin " + this.pluginClass.getCanonicalName() + " is not available.");
+
+        try {
+            return method.invoke(plugin, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
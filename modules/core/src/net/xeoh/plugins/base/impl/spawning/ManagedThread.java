@@ -0,0 +1,181 @@
+/*
+ * ManagedThread.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.spawning;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.ThreadController;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel.Member;
+import net.xeoh.plugins.diagnosis.local.options.status.OptionInfo;
+
+/**
+ * Executes a &#064;Thread method, regardless of whether it runs on a dedicated, a 
+ * pooled or a virtual thread, and allows to stop and join it. 
+ * 
+ * @author Ralf Biedert
+ */
+public class ManagedThread implements Runnable, ThreadController {
+    /** Used for logging */
+    private final Spawner spawner;
+
+    /** The plugin to call */
+    private final Plugin plugin;
+
+    /** The method to call */
+    private final Member member;
+
+    /** Counted down once the method returned (or will never be called) */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /** Counted down when we should stop */
+    private final CountDownLatch stopRequested = new CountDownLatch(1);
+
+    /** The thread currently executing the method */
+    private volatile Thread runner;
+
+    /** Set if the method is being executed in a pool */
+    private volatile Future<?> future;
+
+    /**
+     * @param spawner
+     * @param plugin
+     * @param member
+     */
+    public ManagedThread(Spawner spawner, Plugin plugin, Member member) {
+        this.spawner = spawner;
+        this.plugin = plugin;
+        this.member = member;
+    }
+
+    /**
+     * @return A name describing the method.
+     */
+    public String getName() {
+        return this.plugin.getClass().getName() + "." + this.member.name + "()";
+    }
+
+    /**
+     * Sets the future if the method is executed in a pool.
+     * 
+     * @param future
+     */
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        this.runner = Thread.currentThread();
+
+        try {
+            if (!isRunning()) return;
+
+            // Pass the controller if the method wants it
+            if (this.member.parameterTypes.length == 1) this.member.invoke(this.plugin, this);
+            else this.member.invoke(this.plugin);
+        } catch (final IllegalArgumentException e) {
+            this.spawner.log("spawnthreads/exception/illegalargument", new OptionInfo("method", this.member.name), new OptionInfo("message", e.getMessage()));        
+            e.printStackTrace();
+        } catch (final IllegalAccessException e) {
+            this.spawner.log("spawnthreads/exception/illegalaccess", new OptionInfo("method", this.member.name), new OptionInfo("message", e.getMessage()));        
+            e.printStackTrace();
+        } catch (final InvocationTargetException e) {
+            this.spawner.log("spawnthreads/exception/invocationtargetexception", new OptionInfo("method", this.member.name), new OptionInfo("message", e.getMessage()));        
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                this.runner = null;
+            }
+
+
+            // Don't leave the interrupt behind for the next task of a pool
+            if (this.future != null) Thread.interrupted();
+            
+            this.terminated.countDown();
+        }
+    }
+
+    /**
+     * Requests the method to stop and interrupts its thread.
+     */
+    public void stop() {
+        this.stopRequested.countDown();
+
+        // In case we never ran we won't run anymore
+        final Future<?> f = this.future;
+        if (f != null && f.cancel(false)) {
+            this.terminated.countDown();
+            return;
+        }
+
+        synchronized (this) {
+            if (this.runner != null) this.runner.interrupt();
+        }
+    }
+
+    /**
+     * Waits for the method to return.
+     * 
+     * @param millis Maximal time to wait.
+     * @return True if the method returned in time.
+     */
+    public boolean join(long millis) {
+        try {
+            return this.terminated.await(Math.max(0, millis), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.base.ThreadController#isRunning()
+     */
+    public boolean isRunning() {
+        return this.stopRequested.getCount() > 0;
+    }
+
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.base.ThreadController#sleep(long)
+     */
+    public boolean sleep(long millis) {
+        try {
+            this.stopRequested.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return isRunning();
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * OrderedShutdown.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.spawning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
+import net.xeoh.plugins.base.impl.registry.PluginMetaInformation;
+import net.xeoh.plugins.base.impl.registry.PluginRegistry;
+import net.xeoh.plugins.diagnosis.local.options.status.OptionInfo;
+
+/**
+ * Destroys all plugins of a registry in reverse dependency order: a plugin is only 
+ * destroyed once all plugins depending on it have been destroyed. Independent plugins 
+ * are destroyed concurrently. Each plugin has a time budget, after which we stop waiting 
+ * for it (and destroy the plugins it depends on nevertheless), and the whole shutdown has 
+ * a deadline, after which we stop waiting altogether. The remaining plugins are then 
+ * destroyed in the background, one after another in reverse dependency order and each 
+ * with its time budget, and all plugins not destroyed by the time we return are reported 
+ * as over budget.
+ * 
+ * @author Ralf Biedert
+ */
+public class OrderedShutdown {
+    /** */
+    final Logger logger = Logger.getLogger(this.getClass().getName());
+
+    /** Destroys the plugins */
+    private final Spawner spawner;
+
+    /** Where the plugins are registered */
+    private final PluginRegistry registry;
+
+    /** Budget of a single plugin in ms */
+    private final long pluginTimeout;
+
+    /** Budget of the whole shutdown in ms */
+    private final long deadline;
+
+    /** Plugins exceeding their budget, with the time they took (-1 if they did not finish) */
+    private final Map<Plugin, Long> overruns = new LinkedHashMap<Plugin, Long>();
+
+    /** Plugins left to the background after the deadline and not destroyed yet */
+    private final Set<Plugin> late = Collections.synchronizedSet(new LinkedHashSet<Plugin>());
+
+    /** Meta information of all plugins, resolved before anything is destroyed */
+    private final Map<Plugin, PluginMetaInformation> metaInformation = new HashMap<Plugin, PluginMetaInformation>();
+
+    /**
+     * @param spawner The spawner to destroy plugins with.
+     * @param registry The registry holding the plugins.
+     * @param pluginTimeout Time in ms we wait for a single plugin.
+     * @param deadline Time in ms we wait for all plugins.
+     */
+    public OrderedShutdown(Spawner spawner, PluginRegistry registry, long pluginTimeout,
+                           long deadline) {
+        this.spawner = spawner;
+        this.registry = registry;
+        this.pluginTimeout = pluginTimeout;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Destroys all plugins. Plugins that were not loaded from a class path (i.e., the 
+     * ones making up the plugin manager) are destroyed last, one after another, in 
+     * reverse order of registration.
+     * 
+     * @return The plugins exceeding their budget, with the time they took in ms (-1 if 
+     * they did not finish in time).
+     */
+    public Map<Plugin, Long> run() {
+        final List<Plugin> plugins = new ArrayList<Plugin>();
+        final List<Plugin> core = new ArrayList<Plugin>();
+
+        for (Plugin plugin : this.registry.getAllPlugins()) {
+            final PluginMetaInformation metaInformation = this.registry.getMetaInformationFor(plugin);
+            this.metaInformation.put(plugin, metaInformation);
+
+            if (metaInformation != null && metaInformation.classMeta != null) plugins.add(plugin);
+            else core.add(plugin);
+        }
+
+        destroyInOrder(plugins);
+
+        Collections.reverse(core);
+        for (Plugin plugin : core) {
+            destroy(plugin);
+        }
+
+        report();
+        return this.overruns;
+    }
+
+    /**
+     * Destroys the given plugins in reverse dependency order.
+     * 
+     * @param plugins
+     */
+    private void destroyInOrder(List<Plugin> plugins) {
+        if (plugins.isEmpty()) return;
+
+        // For each plugin the plugins it depends on, and the number of plugins depending on it
+        final Map<Plugin, Set<Plugin>> providers = new HashMap<Plugin, Set<Plugin>>();
+        final Map<Plugin, Integer> dependents = new HashMap<Plugin, Integer>();
+        final Set<Plugin> candidates = new HashSet<Plugin>(plugins);
+
+        for (Plugin plugin : plugins) {
+            dependents.put(plugin, Integer.valueOf(0));
+        }
+
+        // Look the providers up in the registry's type index instead of testing all plugins
+        for (Plugin plugin : plugins) {
+            final Set<Plugin> set = new LinkedHashSet<Plugin>();
+            providers.put(plugin, set);
+
+            for (Dependency d : this.metaInformation.get(plugin).classMeta.dependencies) {
+                for (Plugin provider : this.registry.getActivePluginsFor(d.pluginClass)) {
+                    if (provider == plugin || !candidates.contains(provider) || !set.add(provider)) continue;
+
+                    dependents.put(provider, Integer.valueOf(dependents.get(provider).intValue() + 1));
+                }
+            }
+        }
+
+        final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                // Daemonic, so plugins that never return don't keep the VM alive
+                final Thread thread = new Thread(r, "JSPF Shutdown-" + this.counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final CompletionService<Plugin> completion = new ExecutorCompletionService<Plugin>(executor);
+        final Map<Future<Plugin>, Plugin> running = new HashMap<Future<Plugin>, Plugin>();
+        final Map<Plugin, Long> started = new HashMap<Plugin, Long>();
+        final List<Plugin> pending = new ArrayList<Plugin>(plugins);
+        final long end = System.currentTimeMillis() + this.deadline;
+        boolean background = false;
+
+        try {
+            while (true) {
+                // Start all plugins nobody depends on anymore
+                for (Plugin plugin : new ArrayList<Plugin>(pending)) {
+                    if (dependents.get(plugin).intValue() > 0) continue;
+
+                    pending.remove(plugin);
+                    started.put(plugin, Long.valueOf(System.currentTimeMillis()));
+                    running.put(completion.submit(newDestroyTask(plugin), plugin), plugin);
+                }
+
+                if (running.isEmpty()) {
+                    if (pending.isEmpty()) break;
+
+                    // Only cycles are left, so ignore their order
+                    this.spawner.log("shutdown/cycle", new OptionInfo("plugins", Integer.valueOf(pending.size())));
+                    for (Plugin plugin : pending) {
+                        dependents.put(plugin, Integer.valueOf(0));
+                    }
+                    continue;
+                }
+
+                // Wait until the next plugin finishes or runs out of time
+                final long now = System.currentTimeMillis();
+                long wait = end - now;
+                for (Plugin plugin : running.values()) {
+                    wait = Math.min(wait, started.get(plugin).longValue() + this.pluginTimeout - now);
+                }
+
+                final Future<Plugin> done = completion.poll(Math.max(0, wait), TimeUnit.MILLISECONDS);
+                final long finished = System.currentTimeMillis();
+
+                if (done != null && running.containsKey(done)) {
+                    final Plugin plugin = running.remove(done);
+                    final long took = finished - started.get(plugin).longValue();
+                    if (took > this.pluginTimeout) this.overruns.put(plugin, Long.valueOf(took));
+
+                    release(plugin, providers, dependents);
+                }
+
+                // The whole shutdown ran out of time, stop waiting for the running plugins
+                // and leave everything else to the background
+                if (finished >= end) {
+                    for (Plugin plugin : running.values()) {
+                        this.overruns.put(plugin, Long.valueOf(-1));
+                        release(plugin, providers, dependents);
+                    }
+
+                    destroyLate(order(pending, providers, dependents), executor);
+                    background = true;
+                    break;
+                }
+
+                // Stop waiting for plugins exceeding their budget
+                for (Future<Plugin> future : new ArrayList<Future<Plugin>>(running.keySet())) {
+                    final Plugin plugin = running.get(future);
+                    if (finished - started.get(plugin).longValue() < this.pluginTimeout) continue;
+
+                    running.remove(future);
+                    this.overruns.put(plugin, Long.valueOf(-1));
+                    release(plugin, providers, dependents);
+                }
+            }
+        } catch (InterruptedException e) {
+            this.logger.warning("Interrupted while shutting down plugins.");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!background) executor.shutdown();
+        }
+    }
+
+    /**
+     * Orders the given plugins so that every plugin comes before the plugins it depends 
+     * on, as far as possible.
+     * 
+     * @param pending
+     * @param providers
+     * @param dependents
+     * @return The plugins in the order they should be destroyed.
+     */
+    private static List<Plugin> order(List<Plugin> pending, Map<Plugin, Set<Plugin>> providers,
+                                      Map<Plugin, Integer> dependents) {
+        final List<Plugin> rval = new ArrayList<Plugin>();
+
+        while (!pending.isEmpty()) {
+            // Only cycles are left if nobody is free, so just take the first one
+            Plugin next = pending.get(0);
+            for (Plugin plugin : pending) {
+                if (dependents.get(plugin).intValue() > 0) continue;
+
+                next = plugin;
+                break;
+            }
+
+            pending.remove(next);
+            rval.add(next);
+            release(next, providers, dependents);
+        }
+
+        return rval;
+    }
+
+    /**
+     * Destroys the given plugins in the background, one after another, waiting at most 
+     * the time budget for each. Shuts the executor down afterwards.
+     * 
+     * @param order
+     * @param executor
+     */
+    private void destroyLate(final List<Plugin> order, final ExecutorService executor) {
+        this.late.addAll(order);
+
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    for (Plugin plugin : order) {
+                        try {
+                            executor.submit(newDestroyTask(plugin)).get(OrderedShutdown.this.pluginTimeout, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException e) {
+                            // Proceed with the plugins it depends on
+                        } catch (ExecutionException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    executor.shutdown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Marks the given plugin as destroyed, so the plugins it depends on can follow.
+     * 
+     * @param plugin
+     * @param providers
+     * @param dependents
+     */
+    private static void release(Plugin plugin, Map<Plugin, Set<Plugin>> providers,
+                                Map<Plugin, Integer> dependents) {
+        for (Plugin provider : providers.get(plugin)) {
+            dependents.put(provider, Integer.valueOf(dependents.get(provider).intValue() - 1));
+        }
+    }
+
+    /**
+     * @param plugin
+     * @return A task destroying the given plugin.
+     */
+    private Runnable newDestroyTask(final Plugin plugin) {
+        return new Runnable() {
+            public void run() {
+                destroy(plugin);
+            }
+        };
+    }
+
+    /**
+     * Destroys a single plugin.
+     * 
+     * @param plugin
+     */
+    void destroy(Plugin plugin) {
+        this.spawner.log("shutdown/destroy", new OptionInfo("plugin", plugin.getClass().getCanonicalName()));
+
+        // Plugins registered without meta information have nothing for the spawner to halt
+        PluginMetaInformation metaInformation = this.metaInformation.get(plugin);
+        if (metaInformation == null) metaInformation = new PluginMetaInformation();
+
+        try {
+            this.spawner.destroyPlugin(plugin, metaInformation);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        this.late.remove(plugin);
+    }
+
+    /**
+     * Reports all plugins exceeding their budget.
+     */
+    private void report() {
+        synchronized (this.late) {
+            for (Plugin plugin : this.late) {
+                if (!this.overruns.containsKey(plugin)) this.overruns.put(plugin, Long.valueOf(-1));
+            }
+        }
+
+        for (Plugin plugin : this.overruns.keySet()) {
+            final long took = this.overruns.get(plugin).longValue();
+            final String name = LazyPluginHandler.getPluginClass(plugin).getCanonicalName();
+
+            this.spawner.log("shutdown/overrun", new OptionInfo("plugin", name), new OptionInfo("time", Long.valueOf(took)));
+
+            if (took < 0) this.logger.warning("Plugin " + name + " did not shut down in time (budget " + this.pluginTimeout + "ms)");
+            else this.logger.warning("Plugin " + name + " took " + took + "ms to shut down (budget " + this.pluginTimeout + "ms)");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * PluginLoadedIndex.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.spawning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.annotations.events.PluginLoaded;
+import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginLoadedInformation;
+import net.xeoh.plugins.base.impl.registry.PluginRegistry;
+
+/**
+ * Keeps the &#064;{@link PluginLoaded} methods of all hooked plugins by the type they 
+ * accept, so a new plugin only has to be offered to the methods interested in one of 
+ * its interfaces.
+ * 
+ * @author Ralf Biedert
+ */
+public class PluginLoadedIndex {
+    /**
+     * A &#064;PluginLoaded method of a given plugin.
+     */
+    public static class Listener {
+        /** Position in the order listeners were added */
+        final long sequence;
+
+        /** The plugin declaring the method */
+        public final Plugin plugin;
+
+        /** The method */
+        public final PluginLoadedInformation information;
+
+        /**
+         * @param sequence
+         * @param plugin
+         * @param information
+         */
+        Listener(long sequence, Plugin plugin, PluginLoadedInformation information) {
+            this.sequence = sequence;
+            this.plugin = plugin;
+            this.information = information;
+        }
+    }
+
+    /** Orders listeners the way they were added */
+    private static final Comparator<Listener> BY_SEQUENCE = new Comparator<Listener>() {
+        public int compare(Listener o1, Listener o2) {
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    };
+
+    /** Listeners by the type they accept */
+    private final Map<Class<?>, List<Listener>> listeners = new HashMap<Class<?>, List<Listener>>();
+
+    /** Next sequence number */
+    private long sequence = 0;
+
+    /**
+     * Adds the &#064;PluginLoaded methods of the given plugin.
+     * 
+     * @param plugin The plugin declaring the methods.
+     * @param informations The methods.
+     */
+    public synchronized void add(Plugin plugin,
+                                 Collection<PluginLoadedInformation> informations) {
+        for (PluginLoadedInformation information : informations) {
+            List<Listener> list = this.listeners.get(information.baseType);
+            if (list == null) {
+                list = new ArrayList<Listener>();
+                this.listeners.put(information.baseType, list);
+            }
+
+            list.add(new Listener(this.sequence++, plugin, information));
+        }
+    }
+
+    /**
+     * Returns all listeners accepting the given plugin, in the order they were added.
+     * 
+     * @param plugin The new plugin.
+     * @return The listeners to notify.
+     */
+    public List<Listener> getListenersFor(Plugin plugin) {
+        final Collection<Class<?>> interfaces = PluginRegistry.getPluginInterfaces(plugin.getClass());
+        final List<Listener> rval = new ArrayList<Listener>();
+
+        synchronized (this) {
+            if (this.listeners.isEmpty()) return rval;
+
+            for (Class<?> type : interfaces) {
+                final List<Listener> list = this.listeners.get(type);
+                if (list != null) rval.addAll(list);
+            }
+        }
+
+        if (rval.size() > 1) Collections.sort(rval, BY_SEQUENCE);
+        return rval;
+    }
+
+    /**
+     * Forgets all listeners.
+     */
+    public synchronized void clear() {
+        this.listeners.clear();
+    }
+}
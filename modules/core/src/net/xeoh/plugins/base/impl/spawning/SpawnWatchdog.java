@@ -0,0 +1,215 @@
+/*
+ * SpawnWatchdog.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.spawning;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.xeoh.plugins.diagnosis.local.options.status.OptionInfo;
+
+/**
+ * Keeps track of all spawns of a plugin manager. Spawns taking longer than a given 
+ * threshold are reported (<code>spawn/timeout/toolong</code>) by a single background 
+ * thread, and the durations of all spawns and their init methods are recorded.
+ * 
+ * @author Ralf Biedert
+ */
+public class SpawnWatchdog {
+    /**
+     * A spawn in progress.
+     */
+    public static class Watch {
+        /** The class being spawned */
+        final Class<?> pluginClass;
+
+        /** When the spawn started */
+        final long startTime = System.nanoTime();
+
+        /** When the init methods were called */
+        long initStartTime = 0;
+
+        /** How long the init methods took (-1 if they were not called) */
+        long initDuration = -1;
+
+        /** The pending late message */
+        ScheduledFuture<?> lateMessage;
+
+        /**
+         * @param pluginClass
+         */
+        Watch(Class<?> pluginClass) {
+            this.pluginClass = pluginClass;
+        }
+
+        /**
+         * Marks the start of the init methods.
+         */
+        public void initStarted() {
+            this.initStartTime = System.nanoTime();
+        }
+
+        /**
+         * Marks the end of the init methods.
+         */
+        public void initEnded() {
+            this.initDuration = System.nanoTime() - this.initStartTime;
+        }
+    }
+
+    /** Used for logging */
+    private final Spawner spawner;
+
+    /** After how many milliseconds a spawn is considered too long */
+    private final long threshold;
+
+    /** Our only thread, reporting late spawns; created on demand */
+    private ScheduledThreadPoolExecutor executor;
+
+    /** Durations of all spawns */
+    private final DurationHistogram spawnDurations = new DurationHistogram();
+
+    /** Durations of all init methods */
+    private final DurationHistogram initDurations = new DurationHistogram();
+
+    /** The last spawn and init duration per plugin class */
+    private final Map<Class<?>, long[]> pluginDurations = new ConcurrentHashMap<Class<?>, long[]>();
+
+    /**
+     * Creates a new watchdog.
+     * 
+     * @param spawner The spawner to report to.
+     * @param threshold Time in milliseconds after which a spawn is reported. 
+     */
+    public SpawnWatchdog(Spawner spawner, long threshold) {
+        this.spawner = spawner;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Starts watching the spawn of the given class.
+     * 
+     * @param pluginClass
+     * @return The watch to pass to {@link #end(Watch)}.
+     */
+    public Watch begin(final Class<?> pluginClass) {
+        final Watch watch = new Watch(pluginClass);
+
+        if (this.threshold > 0) {
+            watch.lateMessage = getExecutor().schedule(new Runnable() {
+                public void run() {
+                    SpawnWatchdog.this.spawner.log("spawn/timeout/toolong", new OptionInfo("plugin", pluginClass.getCanonicalName()));
+                }
+            }, this.threshold, TimeUnit.MILLISECONDS);
+        }
+
+        return watch;
+    }
+
+    /**
+     * Stops watching the given spawn and records its durations.
+     * 
+     * @param watch
+     * @return The duration of the spawn in nanoseconds.
+     */
+    public long end(Watch watch) {
+        final long duration = System.nanoTime() - watch.startTime;
+
+        // Halt the late message
+        if (watch.lateMessage != null && watch.lateMessage.cancel(false)) {
+            synchronized (this) {
+                if (this.executor != null) this.executor.remove((Runnable) watch.lateMessage);
+            }
+        }
+
+        this.spawnDurations.record(duration);
+        if (watch.initDuration >= 0) this.initDurations.record(watch.initDuration);
+        this.pluginDurations.put(watch.pluginClass, new long[] { duration, watch.initDuration });
+
+        return duration;
+    }
+
+    /**
+     * @return The histogram of all spawn durations.
+     */
+    public DurationHistogram getSpawnDurations() {
+        return this.spawnDurations;
+    }
+
+    /**
+     * @return The histogram of all init durations.
+     */
+    public DurationHistogram getInitDurations() {
+        return this.initDurations;
+    }
+
+    /**
+     * Returns the durations of the last spawn of each plugin class. 
+     * 
+     * @return A map from the plugin class to the spawn duration and the init duration 
+     * (both in nanoseconds, the latter is -1 if no init methods were called).
+     */
+    public Map<Class<?>, long[]> getPluginDurations() {
+        final Map<Class<?>, long[]> rval = new HashMap<Class<?>, long[]>();
+        for (Map.Entry<Class<?>, long[]> entry : this.pluginDurations.entrySet()) {
+            rval.put(entry.getKey(), entry.getValue().clone());
+        }
+
+        return Collections.unmodifiableMap(rval);
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    public synchronized void shutdown() {
+        if (this.executor != null) this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+    /**
+     * @return The executor reporting late spawns.
+     */
+    private synchronized ScheduledThreadPoolExecutor getExecutor() {
+        if (this.executor != null) return this.executor;
+
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "JSPF Spawn Watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        return this.executor;
+    }
+}
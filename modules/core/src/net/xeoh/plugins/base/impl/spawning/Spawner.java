@@ -30,23 +30,43 @@ package net.xeoh.plugins.base.impl.spawning;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.TimerTask;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.xeoh.plugins.base.Plugin;
-import net.xeoh.plugins.base.annotations.Thread;
+import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.ThreadController;
+import net.xeoh.plugins.base.annotations.Capabilities;
+import net.xeoh.plugins.base.annotations.Thread.ExecutionMode;
 import net.xeoh.plugins.base.annotations.Timer;
-import net.xeoh.plugins.base.annotations.events.Init;
 import net.xeoh.plugins.base.annotations.events.PluginLoaded;
-import net.xeoh.plugins.base.annotations.events.Shutdown;
 import net.xeoh.plugins.base.diagnosis.channels.tracing.SpawnerTracer;
 import net.xeoh.plugins.base.impl.PluginManagerImpl;
 import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel.Member;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel.ThreadMember;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel.TimerMember;
 import net.xeoh.plugins.base.impl.registry.PluginMetaInformation;
 import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginLoadedInformation;
 import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginStatus;
+import net.xeoh.plugins.base.impl.spawning.PluginLoadedIndex.Listener;
 import net.xeoh.plugins.base.impl.spawning.handler.InjectHandler;
-import net.xeoh.plugins.base.util.PluginManagerUtil;
+import net.xeoh.plugins.base.util.PluginConfigurationUtil;
 import net.xeoh.plugins.diagnosis.local.Diagnosis;
 import net.xeoh.plugins.diagnosis.local.DiagnosisChannel;
 import net.xeoh.plugins.diagnosis.local.options.StatusOption;
@@ -64,6 +84,24 @@ public class Spawner {
     /** Main plugin manager */
     private final PluginManagerImpl pluginManager;
 
+    /** Executes the &#064;Timer methods of all plugins, created on demand */
+    private ScheduledThreadPoolExecutor timerExecutor;
+
+    /** Watches all spawns, created on demand */
+    private SpawnWatchdog watchdog;
+
+    /** Executes pooled &#064;Thread methods, created on demand */
+    private ExecutorService threadPool;
+
+    /** &#064;PluginLoaded methods of all hooked plugins */
+    private final PluginLoadedIndex pluginLoadedIndex = new PluginLoadedIndex();
+
+    /** Reflective models of all classes we spawned or inspected so far */
+    private final ConcurrentMap<Class<?>, PluginClassModel> classModels = new ConcurrentHashMap<Class<?>, PluginClassModel>();
+
+    /** Statistics of all scheduled timers */
+    private final List<TimerStatistics> timerStatistics = new CopyOnWriteArrayList<TimerStatistics>();
+
     /**
      * Creates a new spawner with the given PluginManager.
      * 
@@ -84,28 +122,34 @@ public class Spawner {
 
         log("destroy/start", new OptionInfo("plugin", plugin.getClass().getCanonicalName()));
         
-        // Halt all timer tasks
-        for (final TimerTask timerTask : metaInformation.timerTasks) {
-            timerTask.cancel();
+        // Halt all timers (running invocations may complete)
+        for (final ScheduledFuture<?> future : metaInformation.timerFutures) {
+            future.cancel(false);
         }
+        
+        if (metaInformation.timerFutures.size() > 0) purgeTimers();
 
-        // Halt all timers
-        for (final java.util.Timer timer : metaInformation.timers) {
-            timer.cancel();
-        }
+        this.timerStatistics.removeAll(metaInformation.timerStatistics);
 
-        // Halt all threads
-        for (final java.lang.Thread thread : metaInformation.threads) {
-            // TODO: Maybe not the best way to terminate.
+        // Halt all threads and give them some time to terminate
+        for (final ManagedThread thread : metaInformation.threads) {
             try {
-                thread.interrupt();
+                thread.stop();
             } catch (final Exception e) {
                 e.printStackTrace();
             }
         }
 
-        // Call shutdown hooks
-        callShutdownMethods(plugin);
+        final long deadline = System.currentTimeMillis() + getThreadShutdownTimeout();
+        for (final ManagedThread thread : metaInformation.threads) {
+            if (!thread.join(deadline - System.currentTimeMillis())) {
+                log("destroy/thread/timeout", new OptionInfo("thread", thread.getName()));
+            }
+        }
+
+        // Call shutdown hooks (lazy plugins only if they were ever spawned)
+        final Plugin target = LazyPluginHandler.destroy(plugin);
+        if (target != null) callShutdownMethods(target);
         log("destroy/end", new OptionInfo("plugin", plugin.getClass().getCanonicalName()));        
     }
 
@@ -120,12 +164,12 @@ public class Spawner {
 
         // Get all our annotations.
         for (PluginLoadedInformation pli : metaInformation.pluginLoadedInformation) {
-            final Collection<? extends Plugin> plugins = new PluginManagerUtil(this.pluginManager).getPlugins(pli.baseType);
+            final Collection<? extends Plugin> plugins = this.pluginManager.getPlugins(pli.baseType);
 
             // For each plugin we have a request, call this plugin.
             for (Plugin p : plugins) {
                 try {
-                    pli.method.invoke(plugin, p);
+                    pli.member.invoke(plugin, p);
                 } catch (IllegalArgumentException e) {
                     e.printStackTrace();
                 } catch (IllegalAccessException e) {
@@ -139,34 +183,44 @@ public class Spawner {
         }
     }
 
+    /**
+     * Makes the {@link PluginLoaded} methods of the given plugin known, so they are called 
+     * for plugins hooked from now on.
+     * 
+     * @param plugin The plugin declaring the methods.
+     * @param metaInformation Its meta information.
+     */
+    public void registerPluginLoadedMethods(final Plugin plugin,
+                                            final PluginMetaInformation metaInformation) {
+        if (metaInformation.pluginLoadedInformation.isEmpty()) return;
+        this.pluginLoadedIndex.add(plugin, metaInformation.pluginLoadedInformation);
+    }
+
     /**
      * Processes the {@link PluginLoaded} annotation for other plugins for this plugin.
      * 
      * @param newPlugin Newly creatd pluign
      */
     public void processOtherPluginLoadedAnnotation(Plugin newPlugin) {
+        // Only active plugins are handed out
+        final PluginMetaInformation metaInformation = this.pluginManager.getPluginRegistry().getMetaInformationFor(newPlugin);
+        if (metaInformation == null || metaInformation.pluginStatus != PluginStatus.ACTIVE) return;
 
-        for (Plugin plugin : this.pluginManager.getPluginRegistry().getAllPlugins()) {
-            final PluginMetaInformation pmi = this.pluginManager.getPluginRegistry().getMetaInformationFor(plugin);
-
-            for (PluginLoadedInformation pli : pmi.pluginLoadedInformation) {
-                final Collection<? extends Plugin> plins = new PluginManagerUtil(this.pluginManager).getPlugins(pli.baseType);
-
-                // Check if the new plugin is returned upon request
-                if (plins.contains(newPlugin)) {
-                    try {
-                        pli.method.invoke(plugin, newPlugin);
-                    } catch (IllegalArgumentException e) {
-                        e.printStackTrace();
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    } catch (InvocationTargetException e) {
-                        e.printStackTrace();
-                    }
+        // Only methods accepting one of the plugin's interfaces are interested
+        for (Listener listener : this.pluginLoadedIndex.getListenersFor(newPlugin)) {
+            final PluginLoadedInformation pli = listener.information;
 
-                    pli.calledWith.add(newPlugin);
-                }
+            try {
+                pli.member.invoke(LazyPluginHandler.getTarget(listener.plugin), newPlugin);
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
             }
+
+            pli.calledWith.add(newPlugin);
         }
     }
 
@@ -180,21 +234,12 @@ public class Spawner {
     public SpawnResult spawnPlugin(final Class c) {
         log("spawn/start", new OptionInfo("plugin", c.getCanonicalName()));
 
-        // Used for time measurements.
-        final long startTime = System.nanoTime();
-        final java.util.Timer timer = new java.util.Timer();
-        final TimerTask lateMessage = new TimerTask() {
-            @Override
-            public void run() {
-                log("spawn/timeout/toolong", new OptionInfo("plugin", c.getCanonicalName()));
-            }
-        };
+        // Used for time measurements and late messages
+        final SpawnWatchdog watchdog = getWatchdog();
+        final SpawnWatchdog.Watch watch = watchdog.begin(c);
 
         // Finally load and register plugin
         try {
-            // Schedule late message. (TODO: Make this configurable)
-            timer.schedule(lateMessage, 250);
-
             // Instanciate the plugin
             final Constructor constructor = c.getDeclaredConstructor();
             constructor.setAccessible(true);
@@ -208,13 +253,15 @@ public class Spawner {
             // Finally load and register plugin
             try {
 
-                new InjectHandler(this.pluginManager).init(spawnedPlugin);
+                // Obtain all annotated members
+                final PluginClassModel model = getClassModel(c);
 
-                // Obtain all methods
-                final Method[] methods = getMethods(c);
+                new InjectHandler(this.pluginManager).init(spawnedPlugin, model);
 
                 // 2. Call all init methods
-                final boolean initStatus = callInitMethods(spawnedPlugin, methods);
+                watch.initStarted();
+                final boolean initStatus = callInitMethods(spawnedPlugin, model);
+                watch.initEnded();
                 if (initStatus == false) {
                     spawnResult.metaInformation.pluginStatus = PluginStatus.FAILED;
                     return spawnResult;
@@ -223,14 +270,17 @@ public class Spawner {
                 // Initialization complete
                 spawnResult.metaInformation.pluginStatus = PluginStatus.INITIALIZED;
 
+                // Capabilities must be operational after init, so cache them now
+                spawnResult.metaInformation.capabilities = obtainCapabilities(spawnedPlugin, model);
+
                 // 3. Spawn all threads
-                spawnThreads(spawnResult, methods);
+                spawnThreads(spawnResult, model);
 
                 // 4. Spawn timer
-                spawnTimer(spawnResult, methods);
+                spawnTimer(spawnResult, model);
 
                 // 5. Obtain PluginLoaded methods
-                obtainPluginLoadedMethods(spawnResult, methods);
+                obtainPluginLoadedMethods(spawnResult, model);
 
                 // Currently running
                 spawnResult.metaInformation.pluginStatus = PluginStatus.ACTIVE;
@@ -257,11 +307,8 @@ public class Spawner {
                 cause = cause.getCause();
             }
         } finally {
-            // Halt the late message
-            timer.cancel();
-
-            final long stopTime = System.nanoTime();
-            final long delta = (stopTime - startTime) / 1000;
+            // Halt the late message and record the times
+            final long delta = watchdog.end(watch) / 1000;
             log("spawn/duration", new OptionInfo("plugin", c.getCanonicalName()), new OptionInfo("time", ""+ delta));
         }
         
@@ -270,49 +317,95 @@ public class Spawner {
     }
 
     /**
+     * Creates a placeholder for the given class that spawns the plugin when it is first 
+     * used.
      * 
-     * @param methods
+     * @param c Class to spawn from.
+     * @return The placeholder, or null if the class must be spawned right away.
+     */
+    @SuppressWarnings("unchecked")
+    public SpawnResult spawnLazyPlugin(final Class<? extends Plugin> c) {
+        final PluginClassModel model = getClassModel(c);
+
+        // Capabilities have to be known when the plugin is registered
+        if (model.capabilitiesMethods.size() > 0) return null;
+
+        // Threads and timers would never start if nobody requests the plugin
+        if (model.threadMethods.size() > 0 || model.timerMethods.size() > 0) return null;
+
+        final Plugin placeholder = LazyPluginHandler.newPlaceholder(this, c);
+        if (placeholder == null) return null;
+
+        log("spawn/lazy", new OptionInfo("plugin", c.getCanonicalName()));
+
+        final SpawnResult spawnResult = new SpawnResult(placeholder);
+        spawnResult.metaInformation.pluginStatus = PluginStatus.ACTIVE;
+        spawnResult.metaInformation.spawnTime = System.currentTimeMillis();
+        spawnResult.metaInformation.capabilities = Collections.EMPTY_SET;
+        return spawnResult;
+    }
+
+    /**
+     * Hands the threads, timers and PluginLoaded methods of a lazily spawned plugin over 
+     * to its placeholder, and catches up on the plugins loaded so far.
+     * 
+     * @param placeholder The placeholder registered for the plugin.
+     * @param spawnResult The result of spawning the plugin.
+     */
+    void activateLazyPlugin(final Plugin placeholder, final SpawnResult spawnResult) {
+        final PluginMetaInformation metaInformation = this.pluginManager.getPluginRegistry().getMetaInformationFor(placeholder);
+
+        if (metaInformation != null) {
+            metaInformation.threads.addAll(spawnResult.metaInformation.threads);
+            metaInformation.timerFutures.addAll(spawnResult.metaInformation.timerFutures);
+            metaInformation.timerStatistics.addAll(spawnResult.metaInformation.timerStatistics);
+            metaInformation.pluginLoadedInformation.addAll(spawnResult.metaInformation.pluginLoadedInformation);
+        }
+
+        processThisPluginLoadedAnnotation(spawnResult.plugin, spawnResult.metaInformation);
+        registerPluginLoadedMethods(placeholder, spawnResult.metaInformation);
+    }
+
+    /**
+     * 
+     * @param model
      * @returns True if initialization was successful.
      * @throws IllegalAccessException
      * 
      * 
      */
-    private boolean callInitMethods(final Plugin spawnedPlugin, final Method[] methods)
+    private boolean callInitMethods(final Plugin spawnedPlugin, final PluginClassModel model)
                                                                                           throws IllegalAccessException {
         log("callinit/start", new OptionInfo("plugin", spawnedPlugin.getClass().getCanonicalName()));        
         // final Class<? extends Plugin> spawnClass = spawnedPlugin.getClass();
 
 
-        for (final Method method : methods) {
-            log("callinit/method", new OptionInfo("method", method.getName()));        
+        for (final Member member : model.initMethods) {
+            final Method method = member.getMethod();
 
-            // Init methods will be marked by the corresponding annotation.
-            final Init annotation = method.getAnnotation(Init.class);
-            if (annotation != null) {
-                log("callinit/method/initannotation", new OptionInfo("method", method.getName()));        
+            log("callinit/method/initannotation", new OptionInfo("method", method.getName()));        
 
-                try {
-                    final Object invoke = method.invoke(spawnedPlugin, new Object[0]);
-                    if (invoke != null && invoke instanceof Boolean) {
-                        // Check if any init method returns false.
-                        if (((Boolean) invoke).booleanValue() == false) return false;
-                    }
-                } catch (final IllegalArgumentException e) {
-                    log("callinit/exception/illegalargument", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                    log("callinit/end/abnormal", new OptionInfo("plugin", spawnedPlugin.getClass().getCanonicalName()));                            
-                    e.printStackTrace();
-                    return false;
-                } catch (final InvocationTargetException e) {
-                    log("callinit/exception/invocationtargetexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                    log("callinit/end/abnormal", new OptionInfo("plugin", spawnedPlugin.getClass().getCanonicalName()));                            
-                    e.printStackTrace();
-                    return false;
-                } catch (final Exception e) {
-                    log("callinit/exception/exception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                    log("callinit/end/abnormal", new OptionInfo("plugin", spawnedPlugin.getClass().getCanonicalName()));                                                
-                    e.printStackTrace();
-                    return false;
+            try {
+                final Object invoke = member.invoke(spawnedPlugin);
+                if (invoke != null && invoke instanceof Boolean) {
+                    // Check if any init method returns false.
+                    if (((Boolean) invoke).booleanValue() == false) return false;
                 }
+            } catch (final IllegalArgumentException e) {
+                log("callinit/exception/illegalargument", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
+                log("callinit/end/abnormal", new OptionInfo("plugin", spawnedPlugin.getClass().getCanonicalName()));                            
+                e.printStackTrace();
+                return false;
+            } catch (final InvocationTargetException e) {
+                log("callinit/exception/invocationtargetexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
+                log("callinit/end/abnormal", new OptionInfo("plugin", spawnedPlugin.getClass().getCanonicalName()));                            
+                e.printStackTrace();
+                return false;
+            } catch (final Exception e) {
+                log("callinit/exception/exception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
+                log("callinit/end/abnormal", new OptionInfo("plugin", spawnedPlugin.getClass().getCanonicalName()));                                                
+                e.printStackTrace();
+                return false;
             }
         }
         
@@ -325,30 +418,25 @@ public class Spawner {
      */
     private void callShutdownMethods(final Plugin plugin) {
         log("callshutdown/start", new OptionInfo("plugin", plugin.getClass().getCanonicalName()));                
-        final Class<? extends Plugin> spawnClass = plugin.getClass();
-        final Method[] methods = spawnClass.getMethods();
+        final PluginClassModel model = getClassModel(plugin.getClass());
 
 
-        for (final Method method : methods) {
-            log("callshutdown/method", new OptionInfo("method", method.getName()));        
+        for (final Member member : model.shutdownMethods) {
+            final Method method = member.getMethod();
 
-            // Init methods will be marked by the corresponding annotation.
-            final Shutdown annotation = method.getAnnotation(Shutdown.class);
-            if (annotation != null) {
-                log("callshutdown/method/shutdownannotation", new OptionInfo("method", method.getName()));        
+            log("callshutdown/method/shutdownannotation", new OptionInfo("method", method.getName()));        
 
-                try {
-                    method.invoke(plugin, new Object[0]);
-                } catch (final IllegalArgumentException e) {
-                    log("callshutdown/exception/illegalargument", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                    e.printStackTrace();
-                } catch (final InvocationTargetException e) {
-                    log("callinit/exception/invocationtargetexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                    e.printStackTrace();
-                } catch (final Exception e) {
-                    log("callshutdown/exception/exception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                    e.printStackTrace();
-                }
+            try {
+                member.invoke(plugin);
+            } catch (final IllegalArgumentException e) {
+                log("callshutdown/exception/illegalargument", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
+                e.printStackTrace();
+            } catch (final InvocationTargetException e) {
+                log("callinit/exception/invocationtargetexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
+                e.printStackTrace();
+            } catch (final Exception e) {
+                log("callshutdown/exception/exception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
+                e.printStackTrace();
             }
         }
         
@@ -357,152 +445,454 @@ public class Spawner {
     }
 
     /**
-     * @param c
-     * @return
+     * Returns the reflective model of the given class, and creates it if necessary.
+     * 
+     * @param c The class to inspect.
+     * @return The model.
      */
-    private Method[] getMethods(final Class<? extends Plugin> c) {
-        final Method[] methods = c.getMethods();
-        return methods;
+    public PluginClassModel getClassModel(final Class<?> c) {
+        final PluginClassModel model = this.classModels.get(c);
+        if (model != null) return model;
+
+        log("classmodel/create", new OptionInfo("class", c.getCanonicalName()));
+
+        final PluginClassModel created = new PluginClassModel(c);
+        final PluginClassModel previous = this.classModels.putIfAbsent(c, created);
+        return previous != null ? previous : created;
+    }
+
+    /**
+     * Uses a model obtained from the cache for the given class, if it still matches the 
+     * class.
+     * 
+     * @param c The class the model was created for.
+     * @param model The model to use.
+     * @return True if the model will be used, false if it is outdated.
+     */
+    public boolean addClassModel(final Class<?> c, final PluginClassModel model) {
+        if (this.classModels.containsKey(c)) return true;
+        if (!model.resolve(c)) return false;
+
+        this.classModels.putIfAbsent(c, model);
+        return true;
     }
 
     /**
      * @param spawnResult
-     * @param methods
+     * @param model
      */
-    private void spawnThreads(final SpawnResult spawnResult, final Method[] methods) {
+    private void spawnThreads(final SpawnResult spawnResult, final PluginClassModel model) {
         log("spawnthreads/start", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()));                
         
-        for (final Method method : methods) {
-            // Init methods will be marked by the corresponding annotation. New:
-            // also turn on extended accessibility, so elements don't have to be public
-            // anymore.
-            method.setAccessible(true);
-            final net.xeoh.plugins.base.annotations.Thread annotation = method.getAnnotation(Thread.class);
-            if (annotation != null) {
-
-                final java.lang.Thread t = new java.lang.Thread(new Runnable() {
-
-                    public void run() {
-                        try {
-                            // TODO: Pass kind of ThreadController as argument 1 (or any
-                            // fitting argument)
-                            method.invoke(spawnResult.plugin, new Object[0]);
-                        } catch (final IllegalArgumentException e) {
-                            log("spawnthreads/exception/illegalargument", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                            e.printStackTrace();
-                        } catch (final IllegalAccessException e) {
-                            log("spawnthreads/exception/illegalaccess", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                            e.printStackTrace();
-                        } catch (final InvocationTargetException e) {
-                            log("spawnthreads/exception/invocationtargetexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                            e.printStackTrace();
-                        }
-                    }
-                });
+        for (final ThreadMember member : model.threadMethods) {
+            final Method method = member.getMethod();
+
+            // Methods may only ask for a controller
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            if (parameterTypes.length > 1 || (parameterTypes.length == 1 && !parameterTypes[0].isAssignableFrom(ThreadController.class))) {
+                log("spawnthreads/wrongparams", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()), new OptionInfo("method", method.getName()));                
+                continue;
+            }
+
+            final ManagedThread t = new ManagedThread(this, spawnResult.plugin, member);
+            final ExecutionMode mode = getExecutionMode(member.executionMode);
 
-                final String name = spawnResult.plugin.getClass().getName() + "." + method.getName() + "()";
-                log("spawnthreads/threadstart", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()), new OptionInfo("threadname", name));                
-                t.setName(name);
-                t.setDaemon(annotation.isDaemonic());
-                t.start();
+            log("spawnthreads/threadstart", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()), new OptionInfo("threadname", t.getName()), new OptionInfo("mode", mode.name()));                
 
-                // Add timer task to list
-                spawnResult.metaInformation.threads.add(t);
+            if (mode == ExecutionMode.POOLED) {
+                t.setFuture(getThreadPool().submit(t));
+            } else {
+                java.lang.Thread thread = null;
+                
+                if (mode == ExecutionMode.VIRTUAL) thread = newVirtualThread(t);
+                if (thread == null) {
+                    thread = new java.lang.Thread(t);
+                    thread.setDaemon(member.isDaemonic);
+                }
+                
+                thread.setName(t.getName());
+                thread.start();
             }
+
+            // Add thread to list
+            spawnResult.metaInformation.threads.add(t);
         }
         
         log("spawnthreads/end", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()));                
     }
 
+    /**
+     * Determines the execution mode for the mode requested by an annotation.
+     * 
+     * @param requested
+     * @return .
+     */
+    private ExecutionMode getExecutionMode(ExecutionMode requested) {
+        if (requested != ExecutionMode.DEFAULT) return requested;
+
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.pluginManager.getPluginConfiguration());
+        final String mode = pcu.getString(PluginManager.class, "thread.mode", ExecutionMode.PLATFORM.name());
+
+        try {
+            final ExecutionMode rval = ExecutionMode.valueOf(mode.trim().toUpperCase());
+            return rval == ExecutionMode.DEFAULT ? ExecutionMode.PLATFORM : rval;
+        } catch (final IllegalArgumentException e) {
+            log("spawnthreads/unknownmode", new OptionInfo("mode", mode));
+            return ExecutionMode.PLATFORM;
+        }
+    }
+
+    /**
+     * Creates an unstarted virtual thread if the JRE supports them. We use reflection,
+     * as they are not available in the JREs we compile against.
+     * 
+     * @param runnable
+     * @return The thread, or <code>null</code> if virtual threads are not supported.
+     */
+    private java.lang.Thread newVirtualThread(Runnable runnable) {
+        try {
+            final Object builder = java.lang.Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            return (java.lang.Thread) builderType.getMethod("unstarted", Runnable.class).invoke(builder, runnable);
+        } catch (final Exception e) {
+            log("spawnthreads/novirtualthreads", new OptionInfo("message", e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Returns the pool shared by all pooled threads, and creates it if necessary. The 
+     * size can be set by the <code>thread.pool.size</code> key of the {@link PluginManager}.
+     * 
+     * @return .
+     */
+    private synchronized ExecutorService getThreadPool() {
+        if (this.threadPool != null) return this.threadPool;
+
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.pluginManager.getPluginConfiguration());
+        final int threads = pcu.getInt(PluginManager.class, "thread.pool.size", Integer.valueOf(2 * Runtime.getRuntime().availableProcessors()));
+
+        this.threadPool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public java.lang.Thread newThread(Runnable r) {
+                final java.lang.Thread thread = new java.lang.Thread(r, "JSPF Thread-" + this.counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        return this.threadPool;
+    }
+
+    /**
+     * Returns how long we wait for the threads of a plugin to terminate, as set by the
+     * <code>thread.shutdown.timeout</code> key of the {@link PluginManager}.
+     * 
+     * @return Time in milliseconds.
+     */
+    private long getThreadShutdownTimeout() {
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.pluginManager.getPluginConfiguration());
+        return pcu.getInt(PluginManager.class, "thread.shutdown.timeout", Integer.valueOf(1000));
+    }
+
     /**
      * @param spawnResult
      * @param methods
      */
     @SuppressWarnings("unchecked")
-    private void obtainPluginLoadedMethods(SpawnResult spawnResult, Method[] methods) {
-        for (final Method method : methods) {
-            // New: also turn on extended accessibility, so elements don't have to be
-            // public anymore.
-            method.setAccessible(true);
-            final PluginLoaded annotation = method.getAnnotation(PluginLoaded.class);
-            if (annotation != null) {
-                final PluginLoadedInformation pli = new PluginLoadedInformation();
-                final Class<?>[] parameterTypes = method.getParameterTypes();
-
-                if (parameterTypes.length != 1) {
-                    log("pluginloadedmethods/wrongnumberofparams", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()),  new OptionInfo("method", method.getName()));                
-                    continue;
-                }
+    private void obtainPluginLoadedMethods(SpawnResult spawnResult, PluginClassModel model) {
+        for (final Member member : model.pluginLoadedMethods) {
+            final Method method = member.getMethod();
 
-                pli.method = method;
-                pli.baseType = (Class<? extends Plugin>) parameterTypes[0];
+            final PluginLoadedInformation pli = new PluginLoadedInformation();
+            final Class<?>[] parameterTypes = method.getParameterTypes();
 
-                // And add result
-                spawnResult.metaInformation.pluginLoadedInformation.add(pli);
+            if (parameterTypes.length != 1) {
+                log("pluginloadedmethods/wrongnumberofparams", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()),  new OptionInfo("method", method.getName()));                
+                continue;
             }
+
+            pli.member = member;
+            pli.baseType = (Class<? extends Plugin>) parameterTypes[0];
+
+            // And add result
+            spawnResult.metaInformation.pluginLoadedInformation.add(pli);
         }
         
     }
 
     /**
-     * @param spawnResult
-     * @param methods
+     * Queries the &#064;{@link Capabilities} method of the given plugin.
+     * 
+     * @param plugin The plugin to query.
+     * @return The capabilities of the plugin.
      */
-    private void spawnTimer(final SpawnResult spawnResult, final Method[] methods) {
-        log("spawntimers/start", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()));                
+    public Set<String> obtainCapabilities(final Plugin plugin) {
+        return obtainCapabilities(plugin, getClassModel(plugin.getClass()));
+    }
 
-        for (final Method method : methods) {
-            // Init methods will be marked by the corresponding annotation. New: also
-            // turn on extended accessibility, so elements don't have to be public
-            // anymore.
-            method.setAccessible(true);
-            final net.xeoh.plugins.base.annotations.Timer annotation = method.getAnnotation(Timer.class);
-            if (annotation != null) {
-
-                final java.util.Timer t = new java.util.Timer();
-
-                final TimerTask tt = new TimerTask() {
-
-                    @Override
-                    public void run() {
-                        try {
-                            final Object invoke = method.invoke(spawnResult.plugin, new Object[0]);
-                            if (invoke != null && invoke instanceof Boolean) {
-                                if (((Boolean) invoke).booleanValue()) {
-                                    t.cancel();
-                                }
-                            }
-                        } catch (final IllegalArgumentException e) {
-                            log("spawntimers/exception/illegalargument", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                            e.printStackTrace();
-                        } catch (final IllegalAccessException e) {
-                            log("spawntimers/exception/illegalaccessexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                            e.printStackTrace();
-                        } catch (final InvocationTargetException e) {
-                            log("spawntimers/exception/invocationtargetexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));        
-                            e.printStackTrace();
-                        }
-                    }
-                };
+    /**
+     * @param plugin
+     * @param model
+     * @return
+     */
+    private Set<String> obtainCapabilities(final Plugin plugin, final PluginClassModel model) {
+        final Set<String> rval = new LinkedHashSet<String>();
 
-                if (annotation.timerType() == Timer.TimerType.RATE_BASED) {
-                    t.scheduleAtFixedRate(tt, annotation.startupDelay(), annotation.period());
-                }
+        // Search for proper method
+        for (final Member member : model.capabilitiesMethods) {
+            final Method method = member.getMethod();
 
-                if (annotation.timerType() == Timer.TimerType.DELAY_BASED) {
-                    t.schedule(tt, annotation.startupDelay(), annotation.period());
+            Object result = null;
+            try {
+                result = member.invoke(plugin);
+            } catch (final IllegalArgumentException e) {
+                log("capabilities/exception/illegalargument", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));
+            } catch (final IllegalAccessException e) {
+                log("capabilities/exception/illegalaccess", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));
+            } catch (final InvocationTargetException e) {
+                log("capabilities/exception/invocationtargetexception", new OptionInfo("method", method.getName()), new OptionInfo("message", e.getMessage()));
+            }
+
+            if (result != null && result instanceof String[]) {
+                for (String string : (String[]) result) {
+                    rval.add(string);
                 }
+                break;
+            }
+        }
+
+        return Collections.unmodifiableSet(rval);
+    }
+
+    /**
+     * @param spawnResult
+     * @param model
+     */
+    private void spawnTimer(final SpawnResult spawnResult, final PluginClassModel model) {
+        log("spawntimers/start", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()));                
+
+        for (final TimerMember member : model.timerMethods) {
+            final TimerStatistics statistics = new TimerStatistics(spawnResult.plugin.getClass(), member.name, member.period, member.timerType, member.overrunPolicy);
+            final TimerMethod timerMethod = new TimerMethod(spawnResult.plugin, member, statistics);
+            final ScheduledThreadPoolExecutor executor = getTimerExecutor();
 
-                // Add timer task to list
-                spawnResult.metaInformation.timerTasks.add(tt);
-                spawnResult.metaInformation.timers.add(t);
+            ScheduledFuture<?> future = null;
+            
+            if (member.timerType == Timer.TimerType.RATE_BASED) {
+                future = executor.scheduleAtFixedRate(timerMethod, member.startupDelay, member.period, TimeUnit.MILLISECONDS);
+            } else {
+                future = executor.scheduleWithFixedDelay(timerMethod, member.startupDelay, member.period, TimeUnit.MILLISECONDS);
             }
 
+            // Add timer to list
+            timerMethod.setFuture(future);
+            spawnResult.metaInformation.timerFutures.add(future);
+            spawnResult.metaInformation.timerStatistics.add(statistics);
+            this.timerStatistics.add(statistics);
+
         }
         
         log("spawntimers/end", new OptionInfo("plugin", spawnResult.plugin.getClass().getCanonicalName()));                
     }
 
+    /**
+     * Returns the executor shared by all timers, and creates it if necessary. The 
+     * number of threads can be set by the <code>timer.threads</code> key of the 
+     * {@link PluginManager}.
+     * 
+     * @return .
+     */
+    private synchronized ScheduledThreadPoolExecutor getTimerExecutor() {
+        if (this.timerExecutor != null) return this.timerExecutor;
+
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.pluginManager.getPluginConfiguration());
+        final int threads = pcu.getInt(PluginManager.class, "timer.threads", Integer.valueOf(Runtime.getRuntime().availableProcessors()));
+
+        log("timerexecutor/create", new OptionInfo("threads", Integer.valueOf(threads)));
+
+        this.timerExecutor = new ScheduledThreadPoolExecutor(Math.max(1, threads), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public java.lang.Thread newThread(Runnable r) {
+                // Not daemonic, timers keep the VM alive until shutdown (as java.util.Timer does)
+                return new java.lang.Thread(r, "JSPF Timer-" + this.counter.incrementAndGet());
+            }
+        });
+
+        return this.timerExecutor;
+    }
+
+    /**
+     * Returns the statistics of all timers of all plugins currently alive.
+     * 
+     * @return A snapshot of the statistics.
+     */
+    public List<TimerStatistics> getTimerStatistics() {
+        return Collections.unmodifiableList(new ArrayList<TimerStatistics>(this.timerStatistics));
+    }
+
+    /**
+     * Returns the watchdog observing all spawns, and creates it if necessary. The time 
+     * after which a spawn is reported can be set by the <code>spawn.watchdog.threshold</code>
+     * key of the {@link PluginManager}.
+     * 
+     * @return .
+     */
+    public synchronized SpawnWatchdog getWatchdog() {
+        if (this.watchdog != null) return this.watchdog;
+
+        final PluginConfigurationUtil pcu = new PluginConfigurationUtil(this.pluginManager.getPluginConfiguration());
+        this.watchdog = new SpawnWatchdog(this, pcu.getInt(PluginManager.class, "spawn.watchdog.threshold", Integer.valueOf(250)));
+
+        return this.watchdog;
+    }
+
+    /**
+     * Removes cancelled timers from the executor's queue.
+     */
+    private synchronized void purgeTimers() {
+        if (this.timerExecutor != null) this.timerExecutor.purge();
+    }
+
+    /**
+     * Releases all resources shared between plugins. Should be called after all plugins 
+     * have been destroyed.
+     */
+    public synchronized void shutdown() {
+        if (this.timerExecutor != null) this.timerExecutor.shutdown();
+        if (this.watchdog != null) this.watchdog.shutdown();
+        if (this.threadPool != null) this.threadPool.shutdownNow();
+        this.timerExecutor = null;
+        this.threadPool = null;
+        this.classModels.clear();
+        this.pluginLoadedIndex.clear();
+    }
+
+    /**
+     * Calls a &#064;{@link Timer} method periodically and cancels its own schedule once 
+     * the method returns <code>true</code>. For rate based timers it also applies the 
+     * overrun policy, as the executor itself always catches up on missed ticks.
+     */
+    private class TimerMethod implements Runnable {
+        /** Plugin to call */
+        private final Plugin plugin;
+
+        /** The method to call */
+        private final TimerMember member;
+
+        /** Where we record executions */
+        private final TimerStatistics statistics;
+
+        /** Period in nanoseconds */
+        private final long period;
+
+        /** Time the next tick is due (the executor never runs us concurrently) */
+        private long due;
+
+        /** Time the last execution ended */
+        private long lastEnd;
+
+        /** Our schedule, set right after scheduling */
+        private volatile ScheduledFuture<?> future;
+
+        /** Set if the method requested cancellation */
+        private volatile boolean cancelled = false;
+
+        /**
+         * @param plugin
+         * @param member
+         */
+        public TimerMethod(Plugin plugin, TimerMember member, TimerStatistics statistics) {
+            this.plugin = plugin;
+            this.member = member;
+            this.statistics = statistics;
+            this.period = TimeUnit.MILLISECONDS.toNanos(member.period);
+            this.due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(member.startupDelay);
+            this.lastEnd = this.due;
+        }
+
+        /**
+         * Sets the schedule of this method.
+         * 
+         * @param future
+         */
+        public void setFuture(ScheduledFuture<?> future) {
+            this.future = future;
+
+            // In case we were cancelled before the future was known
+            if (this.cancelled) future.cancel(false);
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+            if (this.cancelled) return;
+            if (skipTick()) {
+                this.statistics.recordSkipped();
+                return;
+            }
+
+            final long start = System.nanoTime();
+
+            try {
+                final Object invoke = this.member.invoke(this.plugin);
+                if (invoke != null && invoke instanceof Boolean) {
+                    if (((Boolean) invoke).booleanValue()) {
+                        cancel();
+                    }
+                }
+            } catch (final IllegalArgumentException e) {
+                log("spawntimers/exception/illegalargument", new OptionInfo("method", this.member.name), new OptionInfo("message", e.getMessage()));        
+                e.printStackTrace();
+            } catch (final IllegalAccessException e) {
+                log("spawntimers/exception/illegalaccessexception", new OptionInfo("method", this.member.name), new OptionInfo("message", e.getMessage()));        
+                e.printStackTrace();
+            } catch (final InvocationTargetException e) {
+                log("spawntimers/exception/invocationtargetexception", new OptionInfo("method", this.member.name), new OptionInfo("message", e.getMessage()));        
+                e.printStackTrace();
+            }
+
+            this.lastEnd = System.nanoTime();
+            this.statistics.recordExecution(this.lastEnd - start);
+        }
+
+        /**
+         * Decides if the current tick should be dropped according to the overrun policy.
+         * 
+         * @return True if the tick should not be executed.
+         */
+        private boolean skipTick() {
+            if (this.member.timerType != Timer.TimerType.RATE_BASED) return false;
+
+            final long tick = this.due;
+            this.due += this.period;
+
+            switch (this.member.overrunPolicy) {
+            case SKIP:
+                // The tick became due while the previous execution was still running
+                return tick - this.lastEnd < 0;
+            case COALESCE:
+                // A later tick is due as well, that one will execute for all of them
+                return System.nanoTime() - this.due >= 0;
+            default:
+                return false;
+            }
+        }
+
+        /**
+         * Stops all further invocations.
+         */
+        private void cancel() {
+            this.cancelled = true;
+
+            final ScheduledFuture<?> f = this.future;
+            if (f != null) f.cancel(false);
+        }
+    }
+
     /**
      * Returns the list of all dependencies the plugin has.
      * 
@@ -510,7 +900,7 @@ public class Spawner {
      * @return .
      */
     public Collection<Dependency> getDependencies(Class<? extends Plugin> pluginClass) {
-        return new InjectHandler(this.pluginManager).getDependencies(pluginClass);
+        return new InjectHandler(this.pluginManager).getDependencies(getClassModel(pluginClass));
     }
 
     /**
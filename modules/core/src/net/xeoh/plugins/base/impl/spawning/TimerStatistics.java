@@ -0,0 +1,169 @@
+/*
+ * TimerStatistics.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.impl.spawning;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.xeoh.plugins.base.annotations.Timer;
+import net.xeoh.plugins.base.annotations.Timer.OverrunPolicy;
+import net.xeoh.plugins.base.annotations.Timer.TimerType;
+
+/**
+ * Execution counters of a single &#064;{@link Timer} method.
+ * 
+ * @author Ralf Biedert
+ */
+public class TimerStatistics {
+    /** Class of the plugin declaring the timer */
+    private final Class<?> pluginClass;
+
+    /** Name of the timer method */
+    private final String methodName;
+
+    /** Period of the timer in milliseconds */
+    private final long period;
+
+    /** Type of the timer */
+    private final TimerType timerType;
+
+    /** Overrun policy of the timer */
+    private final OverrunPolicy overrunPolicy;
+
+    /** Durations of all executions */
+    private final DurationHistogram durations = new DurationHistogram();
+
+    /** Executions that took longer than the period */
+    private final AtomicLong overruns = new AtomicLong();
+
+    /** Ticks dropped by the overrun policy */
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * @param pluginClass
+     * @param methodName
+     * @param period
+     * @param timerType
+     * @param overrunPolicy
+     */
+    public TimerStatistics(Class<?> pluginClass, String methodName, long period,
+                           TimerType timerType, OverrunPolicy overrunPolicy) {
+        this.pluginClass = pluginClass;
+        this.methodName = methodName;
+        this.period = period;
+        this.timerType = timerType;
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    /**
+     * Records an execution.
+     * 
+     * @param nanos The duration of the execution in nanoseconds.
+     */
+    void recordExecution(long nanos) {
+        this.durations.record(nanos);
+        if (nanos > this.period * 1000000L) this.overruns.incrementAndGet();
+    }
+
+    /**
+     * Records a tick dropped by the overrun policy.
+     */
+    void recordSkipped() {
+        this.skipped.incrementAndGet();
+    }
+
+    /**
+     * @return The class of the plugin declaring the timer.
+     */
+    public Class<?> getPluginClass() {
+        return this.pluginClass;
+    }
+
+    /**
+     * @return The name of the timer method.
+     */
+    public String getMethodName() {
+        return this.methodName;
+    }
+
+    /**
+     * @return The period of the timer in milliseconds.
+     */
+    public long getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * @return The type of the timer.
+     */
+    public TimerType getTimerType() {
+        return this.timerType;
+    }
+
+    /**
+     * @return The overrun policy of the timer.
+     */
+    public OverrunPolicy getOverrunPolicy() {
+        return this.overrunPolicy;
+    }
+
+    /**
+     * @return The number of executions so far.
+     */
+    public long getExecutions() {
+        return this.durations.getCount();
+    }
+
+    /**
+     * @return The number of executions that took longer than the period.
+     */
+    public long getOverruns() {
+        return this.overruns.get();
+    }
+
+    /**
+     * @return The number of ticks dropped by the overrun policy.
+     */
+    public long getSkipped() {
+        return this.skipped.get();
+    }
+
+    /**
+     * @return The durations of all executions (for max, mean and percentiles).
+     */
+    public DurationHistogram getDurations() {
+        return this.durations;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return this.pluginClass.getName() + "." + this.methodName + " [" + this.durations + ", overruns=" + getOverruns() + ", skipped=" + getSkipped() + "]";
+    }
+}
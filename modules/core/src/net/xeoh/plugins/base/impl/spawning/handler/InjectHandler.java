@@ -28,16 +28,15 @@
 package net.xeoh.plugins.base.impl.spawning.handler;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 
 import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.PluginManager;
-import net.xeoh.plugins.base.annotations.injections.InjectPlugin;
 import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel.InjectionMember;
 import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
 
 /**
@@ -62,64 +61,42 @@ public class InjectHandler extends AbstractHandler {
      * net.xeoh.plugins.base.impl.spawning.handler.AbstractHandler#init(net.xeoh.plugins
      * .base.Plugin)
      */
-    @SuppressWarnings("unchecked")
     @Override
     public void init(Plugin plugin) throws Exception {
+        init(plugin, new PluginClassModel(plugin.getClass()));
+    }
 
-        // All fields we have a look at
-        final Field[] fields = plugin.getClass().getFields();
-        final Method[] methods = plugin.getClass().getMethods();
-
-        // Process every field
-        for (final Field field : fields) {
-            // Try to get inject annotation. New: also turn on extended accessibility, so
-            // elements don't have to be public anymore.
-            field.setAccessible(true);
-            final InjectPlugin ipannotation = field.getAnnotation(InjectPlugin.class);
-
-            // If there is one ..
-            if (ipannotation != null) {
-
-                // Obtain capabilities
-                final String[] capabilities = ipannotation.requiredCapabilities();
+    /**
+     * Injects all plugins requested by the given plugin.
+     * 
+     * @param plugin The plugin to inject into.
+     * @param model The model of the plugin's class.
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    public void init(Plugin plugin, PluginClassModel model) throws Exception {
 
-                // Handle the plugin-parameter part
-                // In the default case do an auto-detection ...
-                final Class<? extends Plugin> typeOfField = (Class<? extends Plugin>) field.getType();
+        // Process every field, and setter methods as well (aka Scala hack)
+        for (final InjectionMember member : model.injections) {
+            // Handle the plugin-parameter part
+            // In the default case do an auto-detection ...
+            final Class<? extends Plugin> type = (Class<? extends Plugin>) member.getType();
 
-                this.logger.fine("Injecting plugin by autodetection (" + typeOfField.getName() + ") into " + plugin.getClass().getName());
+            this.logger.fine("Injecting plugin by autodetection (" + type.getName() + ") into " + plugin.getClass().getName());
 
-                field.set(plugin, getEntityForType(typeOfField, capabilities));
+            if (member.isField) {
+                member.getField().set(plugin, getEntityForType(type, member.capabilities));
+                continue;
             }
-        }
-
-        // And setter methods as well (aka Scala hack)
-        for (Method method : methods) {
-            // Try to get inject annotation. New: also turn on extended accessibility, so
-            // elements don't have to be public anymore.
-            method.setAccessible(true);
-            final InjectPlugin ipannotation = method.getAnnotation(InjectPlugin.class);
-
-            if (ipannotation != null) {
 
-                // Obtain capabilities
-                final String[] capabilities = ipannotation.requiredCapabilities();
-
-                // Handle the plugin-parameter part
-                // In the default case do an auto-detection ...
-                final Class<? extends Plugin> typeOfMethod = (Class<? extends Plugin>) method.getParameterTypes()[0];
-
-                this.logger.fine("Injecting plugin by autodetection (" + typeOfMethod.getName() + ") into " + plugin.getClass().getName());
-
-                try {
-                    method.invoke(plugin, getEntityForType(typeOfMethod, capabilities));
-                } catch (IllegalArgumentException e) {
-                    this.logger.warning("Unable to inject plugin " + typeOfMethod + " into method " + method);
-                    e.printStackTrace();
-                } catch (InvocationTargetException e) {
-                    this.logger.warning("Unable to inject plugin " + typeOfMethod + " into method " + method);
-                    e.printStackTrace();
-                }
+            try {
+                member.invoke(plugin, getEntityForType(type, member.capabilities));
+            } catch (IllegalArgumentException e) {
+                this.logger.warning("Unable to inject plugin " + type + " into method " + member.getMethod());
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                this.logger.warning("Unable to inject plugin " + type + " into method " + member.getMethod());
+                e.printStackTrace();
             }
         }
     }
@@ -214,47 +191,31 @@ public class InjectHandler extends AbstractHandler {
      * @param pluginClass
      * @return .
      */
-    @SuppressWarnings("unchecked")
     public Collection<Dependency> getDependencies(Class<? extends Plugin> pluginClass) {
-        final Collection<Dependency> rval = new ArrayList<Dependency>();
+        return getDependencies(new PluginClassModel(pluginClass));
+    }
 
-        // All fields we have a look at
-        final Field[] fields = pluginClass.getFields();
-        final Method[] methods = pluginClass.getMethods();
-        
+    /**
+     * Returns the list of all dependencies of the plugin described by the model.
+     * 
+     * @param model
+     * @return .
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<Dependency> getDependencies(PluginClassModel model) {
+        final Collection<Dependency> rval = new ArrayList<Dependency>();
 
-        // Process every field
-        for (final Field field : fields) {
-            field.setAccessible(true);
-            
-            final InjectPlugin ipannotation = field.getAnnotation(InjectPlugin.class);
-            if (ipannotation == null) continue;
-            if (ipannotation.isOptional()) continue;
+        // Process every field, and setter methods as well (aka Scala hack)
+        for (final InjectionMember member : model.injections) {
+            if (member.isOptional) continue;
 
             final Dependency d = new Dependency();
-            d.capabilites = ipannotation.requiredCapabilities();
-            d.pluginClass = (Class<? extends Plugin>) getTrueDependencyInterfaceType(field.getType());
-            d.isOptional = ipannotation.isOptional();
+            d.capabilites = member.capabilities;
+            d.pluginClass = (Class<? extends Plugin>) getTrueDependencyInterfaceType(member.getType());
+            d.isOptional = member.isOptional;
 
             rval.add(d);
         }
-        
-        // And setter methods as well (aka Scala hack)
-        for (Method method : methods) {
-            method.setAccessible(true);
-            
-            final InjectPlugin ipannotation = method.getAnnotation(InjectPlugin.class);
-            if (ipannotation == null) continue;
-            if (ipannotation.isOptional()) continue;
-
-
-            final Dependency d = new Dependency();
-            d.capabilites = ipannotation.requiredCapabilities();
-            d.pluginClass = (Class<? extends Plugin>) getTrueDependencyInterfaceType(method.getParameterTypes()[0]);
-            d.isOptional = ipannotation.isOptional();
-
-            rval.add(d);
-        }        
 
         return rval;
     }
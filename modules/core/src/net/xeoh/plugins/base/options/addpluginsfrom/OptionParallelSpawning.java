@@ -0,0 +1,79 @@
+/*
+ * OptionParallelSpawning.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.base.options.addpluginsfrom;
+
+import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.options.AddPluginsFromOption;
+
+/**
+ * Spawns the plugins found at the given location concurrently. Plugins are spawned (and 
+ * their init methods called) as soon as all their dependencies are available, so 
+ * independent plugins with slow init methods don't delay each other. Plugins are 
+ * still added in a valid dependency order. For example, to use 4 threads write:<br/><br/>
+ * 
+ * <code>
+ * pluginManager.addPluginsFrom(uri, new OptionParallelSpawning(4));
+ * </code><br/><br/>
+ * 
+ * Only use this option if your plugins' init methods are thread safe with respect to 
+ * each other.
+ * 
+ * @author Ralf Biedert
+ * @see PluginManager
+ * @since 1.0.3
+ */
+public class OptionParallelSpawning implements AddPluginsFromOption {
+    /** */
+    private static final long serialVersionUID = 2787613496718722063L;
+
+    /** Number of threads to use */
+    private final int threads;
+
+    /**
+     * Spawns plugins using one thread per processor.
+     */
+    public OptionParallelSpawning() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Spawns plugins using the given number of threads.
+     * 
+     * @param threads Number of threads to use.
+     */
+    public OptionParallelSpawning(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+}
@@ -73,6 +73,28 @@ public class PluginConfigurationUtil extends VanillaPluginUtil<PluginConfigurati
         return Integer.parseInt(configuration);
     }
 
+    /**
+     * Returns the requested key as a long.
+     * 
+     * @param root Root class to request.
+     * @param subkey Subkey to return.
+     * @param defautvalue Default value to return if nothing was found.
+     * @return The requested key, or the default value if the key was not found, or 0 if neither was present.
+     */
+    @SuppressWarnings("boxing")
+    public long getLong(final Class<?> root, final String subkey,
+                        final Long... defautvalue) {
+
+        final String configuration = this.object.getConfiguration(root, subkey);
+        if (configuration == null) {
+            if (defautvalue.length >= 1) return defautvalue[0];
+            this.logger.warning("Returning default 0, but nothing was specified. Your application might behave strangely. Subkey was " + subkey);
+            return 0;
+        }
+
+        return Long.parseLong(configuration);
+    }
+
     /**
      * Returns the reqeusted key or a default string.
      * 
@@ -30,11 +30,13 @@ package net.xeoh.plugins.base.util;
 import static net.jcores.jre.CoreKeeper.$;
 
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 
 import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.annotations.Capabilities;
+import net.xeoh.plugins.base.impl.PluginManagerImpl;
 import net.xeoh.plugins.base.options.AddPluginsFromOption;
 import net.xeoh.plugins.base.options.GetPluginOption;
 import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
@@ -77,12 +79,7 @@ public class PluginManagerUtil extends VanillaPluginUtil<PluginManager> implemen
      * @return A collection of all plugins implementing the given interface.
      */
     public <P extends Plugin> Collection<P> getPlugins(final Class<P> plugin) {
-        return getPlugins(plugin, new PluginSelector<P>() {
-
-            public boolean selectPlugin(final P p) {
-                return true;
-            }
-        });
+        return this.object.getPlugins(plugin);
     }
 
     /**
@@ -109,19 +106,7 @@ public class PluginManagerUtil extends VanillaPluginUtil<PluginManager> implemen
      */
     public <P extends Plugin> Collection<P> getPlugins(final Class<P> plugin,
                                                        final PluginSelector<P> selector) {
-        final Collection<P> allPlugins = new ArrayList<P>();
-
-        this.object.getPlugin(plugin, new OptionPluginSelector<P>(new PluginSelector<P>() {
-
-            public boolean selectPlugin(final P p) {
-                if (selector.selectPlugin(p)) {
-                    allPlugins.add(p);
-                }
-                return false;
-            }
-        }));
-
-        return allPlugins;
+        return this.object.getPlugins(plugin, new OptionPluginSelector<P>(selector));
     }
     
     /**
@@ -141,6 +126,24 @@ public class PluginManagerUtil extends VanillaPluginUtil<PluginManager> implemen
     }
 
     
+    /**
+     * Tells the plugin manager that the capabilities of the given plugin have changed. 
+     * Capabilities are queried once after the plugin has been initialized and are cached 
+     * afterwards. Plugins with dynamic capabilities have to call this method whenever their
+     * &#064;{@link Capabilities} method would return something different, for example:<br/><br/>
+     * 
+     * <code>
+     * new PluginManagerUtil(this.pluginManager).refreshCapabilities(this);
+     * </code>
+     * 
+     * @param plugin The plugin whose capabilities changed.
+     */
+    public void refreshCapabilities(Plugin plugin) {
+        if (this.object instanceof PluginManagerImpl) {
+            ((PluginManagerImpl) this.object).refreshCapabilities(plugin);
+        }
+    }
+
     /* (non-Javadoc)
      * @see net.xeoh.plugins.base.PluginManager#addPluginsFrom(java.net.URI, net.xeoh.plugins.base.options.AddPluginsFromOption[])
      */
@@ -158,6 +161,22 @@ public class PluginManagerUtil extends VanillaPluginUtil<PluginManager> implemen
         return this.object.getPlugin(plugin, options);
     }
     
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.base.PluginManager#getPlugins(java.lang.Class, net.xeoh.plugins.base.options.GetPluginOption[])
+     */
+    @Override
+    public <P extends Plugin> Collection<P> getPlugins(Class<P> plugin, GetPluginOption... options) {
+        return this.object.getPlugins(plugin, options);
+    }
+
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.base.PluginManager#iteratePlugins(java.lang.Class, net.xeoh.plugins.base.options.GetPluginOption[])
+     */
+    @Override
+    public <P extends Plugin> Iterator<P> iteratePlugins(Class<P> plugin, GetPluginOption... options) {
+        return this.object.iteratePlugins(plugin, options);
+    }
+    
     /* (non-Javadoc)
      * @see net.xeoh.plugins.base.PluginManager#shutdown()
      */
@@ -77,6 +77,9 @@ public class DiagnosisImpl implements Diagnosis {
     /** If true, the whole plugin will be disabled */
     boolean isDisabled = false;
 
+    /** Returned for all channels when we are disabled */
+    private final DiagnosisChannel<?> dummyChannel = new DiagnosisChannelDummyImpl(this, null);
+
     /** If true, if we should dump stack traces */
     boolean useStackTraces = false;
 
@@ -106,10 +109,7 @@ public class DiagnosisImpl implements Diagnosis {
     public <T extends Serializable> DiagnosisChannel<T> channel(Class<? extends DiagnosisChannelID<T>> channel,
                                                                 ChannelOption... options) {
         // In case we are disabled, return a dummy
-        if (this.isDisabled) {
-            final DiagnosisChannel<?> impl = new DiagnosisChannelDummyImpl(this, channel);
-            return (DiagnosisChannel<T>) impl;
-        }
+        if (this.isDisabled) return (DiagnosisChannel<T>) this.dummyChannel;
 
         // In case this was the first call, create a serializer
         synchronized (this) {
@@ -200,6 +200,16 @@ public class DiagnosisImpl implements Diagnosis {
 
     }
 
+    /**
+     * Returns true if the diagnosis is enabled, i.e., if status messages will be 
+     * processed at all.
+     * 
+     * @return True if enabled.
+     */
+    public boolean isEnabled() {
+        return !this.isDisabled;
+    }
+
     /** Close the log file */
     @Shutdown
     public void shutdown() {
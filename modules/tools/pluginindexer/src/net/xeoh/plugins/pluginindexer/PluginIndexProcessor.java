@@ -0,0 +1,304 @@
+/*
+ * PluginIndexProcessor.java
+ * 
+ * Copyright (c) 2009, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.pluginindexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import net.xeoh.plugins.base.impl.classpath.PluginIndex;
+import net.xeoh.plugins.base.impl.classpath.PluginIndex.Entry;
+
+/**
+ * Annotation processor writing a {@link PluginIndex} of all 
+ * <code>&#064;PluginImplementation</code>s of a compilation run. The JSPF core reads 
+ * the index when loading the resulting JAR instead of scanning all of its classes. Put 
+ * the processor's JAR (and the JSPF core) on the classpath of <code>javac</code> to
+ * enable it.<br/><br/>
+ * 
+ * Note that the index only lists the plugins compiled in the same run, so always 
+ * build plugin JARs from a clean output folder.
+ * 
+ * @author Ralf Biedert
+ */
+@SupportedAnnotationTypes(PluginIndexProcessor.PLUGIN_IMPLEMENTATION)
+public class PluginIndexProcessor extends AbstractProcessor {
+    /** Annotation marking plugins */
+    static final String PLUGIN_IMPLEMENTATION = "net.xeoh.plugins.base.annotations.PluginImplementation";
+
+    /** Base interface of all plugins */
+    static final String PLUGIN = "net.xeoh.plugins.base.Plugin";
+
+    /** Annotation marking dependencies */
+    static final String INJECT_PLUGIN = "net.xeoh.plugins.base.annotations.injections.InjectPlugin";
+
+    /** Annotation marking capability methods */
+    static final String CAPABILITIES = "net.xeoh.plugins.base.annotations.Capabilities";
+
+    /** Plugins found in all rounds so far */
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /* (non-Javadoc)
+     * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set, javax.annotation.processing.RoundEnvironment)
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // Write the index once all sources have been seen
+        if (roundEnv.processingOver()) {
+            if (!this.entries.isEmpty()) writeIndex();
+            return false;
+        }
+
+        final TypeElement annotation = this.processingEnv.getElementUtils().getTypeElement(PLUGIN_IMPLEMENTATION);
+        if (annotation == null) return false;
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) continue;
+            this.entries.add(entryFor((TypeElement) element));
+        }
+
+        return false;
+    }
+
+    /**
+     * Collects everything the index stores about the given plugin.
+     * 
+     * @param type
+     * @return .
+     */
+    private Entry entryFor(TypeElement type) {
+        final Collection<String> interfaces = new LinkedHashSet<String>();
+        final Collection<String> capabilities = new LinkedHashSet<String>();
+        Collection<String> dependencies = new LinkedHashSet<String>();
+
+        // Walk up the hierarchy, as injections and capabilities might be inherited (like
+        // the core, we only look at public members)
+        TypeElement current = type;
+        while (current != null) {
+            collectInterfaces(current, interfaces);
+
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (!field.getModifiers().contains(Modifier.PUBLIC)) continue;
+
+                final AnnotationMirror inject = getAnnotation(field, INJECT_PLUGIN);
+                if (inject != null && dependencies != null) dependencies = addDependency(dependencies, field.asType(), inject);
+            }
+
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                if (!method.getModifiers().contains(Modifier.PUBLIC)) continue;
+
+                final AnnotationMirror inject = getAnnotation(method, INJECT_PLUGIN);
+                if (inject != null && method.getParameters().size() == 1 && dependencies != null)
+                    dependencies = addDependency(dependencies, method.getParameters().get(0).asType(), inject);
+                if (getAnnotation(method, CAPABILITIES) != null)
+                    capabilities.add(method.getSimpleName().toString());
+            }
+
+            current = superclassOf(current);
+        }
+
+        final String name = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+        return new Entry(name, new ArrayList<String>(interfaces), dependencies == null ? null : new ArrayList<String>(dependencies), new ArrayList<String>(capabilities));
+    }
+
+    /**
+     * Adds a dependency the same way the core would determine it: optional injections 
+     * are ignored, and utility classes wrapping a plugin depend on the wrapped plugin.
+     * 
+     * @param dependencies
+     * @param type The injected type.
+     * @param inject The annotation of the injection.
+     * @return The dependencies, or null if the dependency cannot be stored in the index.
+     */
+    private Collection<String> addDependency(Collection<String> dependencies,
+                                             TypeMirror type, AnnotationMirror inject) {
+        final List<String> capabilities = new ArrayList<String>();
+        boolean optional = false;
+
+        final Map<? extends ExecutableElement, ? extends AnnotationValue> values = this.processingEnv.getElementUtils().getElementValuesWithDefaults(inject);
+        for (ExecutableElement key : values.keySet()) {
+            final Object value = values.get(key).getValue();
+
+            if (key.getSimpleName().contentEquals("isOptional")) optional = ((Boolean) value).booleanValue();
+            if (key.getSimpleName().contentEquals("requiredCapabilities")) {
+                for (Object capability : (List<?>) value) {
+                    capabilities.add((String) ((AnnotationValue) capability).getValue());
+                }
+            }
+        }
+
+        if (optional) return dependencies;
+
+        final TypeMirror pluginType = pluginTypeOf(type);
+        if (pluginType == null) return null;
+
+        final String dependency = PluginIndex.formatDependency(nameOf(pluginType), capabilities.toArray(new String[0]));
+        if (dependency == null) return null;
+
+        dependencies.add(dependency);
+        return dependencies;
+    }
+
+    /**
+     * @param type
+     * @return The type itself if it is an interface, otherwise the parameter type of a 
+     * constructor wrapping a plugin (or null if there is none).
+     */
+    private TypeMirror pluginTypeOf(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) return null;
+
+        final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() == ElementKind.INTERFACE) return type;
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getParameters().size() != 1) continue;
+
+            final TypeMirror parameter = constructor.getParameters().get(0).asType();
+            if (this.processingEnv.getTypeUtils().isAssignable(this.processingEnv.getTypeUtils().erasure(type), this.processingEnv.getTypeUtils().erasure(parameter)))
+                return parameter;
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds all interfaces of the given type extending <code>Plugin</code>.
+     * 
+     * @param type
+     * @param interfaces
+     */
+    private void collectInterfaces(TypeElement type, Collection<String> interfaces) {
+        for (TypeMirror mirror : type.getInterfaces()) {
+            if (mirror.getKind() != TypeKind.DECLARED) continue;
+
+            final TypeElement element = (TypeElement) ((DeclaredType) mirror).asElement();
+            if (element.getQualifiedName().contentEquals(PLUGIN)) continue;
+
+            if (isPlugin(element)) interfaces.add(nameOf(mirror));
+            collectInterfaces(element, interfaces);
+        }
+    }
+
+    /**
+     * @param type
+     * @return True if the given type extends <code>Plugin</code>.
+     */
+    private boolean isPlugin(TypeElement type) {
+        final TypeElement plugin = this.processingEnv.getElementUtils().getTypeElement(PLUGIN);
+        if (plugin == null) return false;
+
+        return this.processingEnv.getTypeUtils().isAssignable(this.processingEnv.getTypeUtils().erasure(type.asType()), plugin.asType());
+    }
+
+    /**
+     * @param type
+     * @return The superclass, or null if there is none.
+     */
+    private static TypeElement superclassOf(TypeElement type) {
+        final TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    /**
+     * @param element
+     * @param annotation
+     * @return The given annotation of the element, or null if it has none.
+     */
+    private static AnnotationMirror getAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            final TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotation)) return mirror;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param mirror
+     * @return The binary name of the (erased) type.
+     */
+    private String nameOf(TypeMirror mirror) {
+        if (mirror.getKind() != TypeKind.DECLARED) return mirror.toString();
+
+        final TypeElement element = (TypeElement) ((DeclaredType) mirror).asElement();
+        return this.processingEnv.getElementUtils().getBinaryName(element).toString();
+    }
+
+    /**
+     * Writes the index into the class output folder.
+     */
+    private void writeIndex() {
+        try {
+            final FileObject resource = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", PluginIndex.LOCATION);
+            final OutputStream stream = resource.openOutputStream();
+
+            try {
+                new PluginIndex(this.entries).write(stream);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Kind.ERROR, "Unable to write plugin index: " + e.getMessage());
+        }
+    }
+}
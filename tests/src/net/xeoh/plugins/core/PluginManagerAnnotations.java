@@ -27,11 +27,32 @@
  */
 package net.xeoh.plugins.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.annotations.Timer.OverrunPolicy;
 import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.impl.PluginManagerImpl;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
+import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginLoadedInformation;
+import net.xeoh.plugins.base.impl.registry.PluginRegistry;
+import net.xeoh.plugins.base.impl.spawning.TimerStatistics;
+import net.xeoh.plugins.base.options.addpluginsfrom.OptionParallelSpawning;
 import net.xeoh.plugins.base.util.JSPFProperties;
 import net.xeoh.plugins.base.util.uri.ClassURI;
+import net.xeoh.plugins.remote.RemoteAPI;
 import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
+import net.xeoh.plugins.testplugins.testannotations.impl.TestAnnotationsImpl;
+import net.xeoh.plugins.testplugins.testlazy.TestLazy;
+import net.xeoh.plugins.testplugins.testlazy.impl.TestLazyImpl;
+import net.xeoh.plugins.testplugins.testtimer.TestTimer;
+import net.xeoh.plugins.testplugins.testtimer.impl.TestTimerImpl;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -85,7 +106,168 @@ public class PluginManagerAnnotations {
         }
 
         Assert.assertEquals(plugin.getThreadStatus(), "THREAD OK");
+        Assert.assertEquals(plugin.getControlledThreadStatus(), "CONTROLLED THREAD OK");
         Assert.assertEquals(plugin.getTimerStatus(), "TIMER OK");
 
+        TimerStatistics timer = null;
+        for (TimerStatistics statistics : ((PluginManagerImpl) this.pm).getSpawner().getTimerStatistics()) {
+            if (statistics.getPluginClass() == TestAnnotationsImpl.class) timer = statistics;
+        }
+
+        Assert.assertNotNull(timer);
+        Assert.assertEquals("timerMeLala", timer.getMethodName());
+        Assert.assertEquals(OverrunPolicy.CATCH_UP, timer.getOverrunPolicy());
+        Assert.assertEquals(1, timer.getExecutions());
+        Assert.assertEquals(0, timer.getSkipped());
+    }
+
+    /**
+     * @throws InterruptedException
+     */
+    @Test
+    public void testTimerOverruns() throws InterruptedException {
+        final JSPFProperties props = new JSPFProperties();
+        props.setProperty(PluginManager.class, "timer.threads", "4");
+        props.setProperty(TestTimerImpl.class, "tick.duration", "" + 3 * TestTimerImpl.PERIOD);
+
+        final PluginManager manager = PluginManagerFactory.createPluginManager(props);
+        manager.addPluginsFrom(ClassURI.CLASSPATH);
+        Assert.assertNotNull(manager.getPlugin(TestTimer.class));
+
+        Thread.sleep(30 * TestTimerImpl.PERIOD);
+
+        final Map<String, TimerStatistics> timers = new HashMap<String, TimerStatistics>();
+        for (TimerStatistics statistics : ((PluginManagerImpl) manager).getSpawner().getTimerStatistics()) {
+            if (statistics.getPluginClass() == TestTimerImpl.class) timers.put(statistics.getMethodName(), statistics);
+        }
+
+        manager.shutdown();
+
+        // Every tick overruns, so all missed ticks are executed ...
+        final TimerStatistics catchUp = timers.get("catchUp");
+        Assert.assertEquals(OverrunPolicy.CATCH_UP, catchUp.getOverrunPolicy());
+        Assert.assertTrue(catchUp.getOverruns() > 1);
+        Assert.assertEquals(0, catchUp.getSkipped());
+
+        // ... dropped ...
+        final TimerStatistics skip = timers.get("skip");
+        Assert.assertEquals(OverrunPolicy.SKIP, skip.getOverrunPolicy());
+        Assert.assertTrue(skip.getOverruns() > 1);
+        Assert.assertTrue(skip.getSkipped() > 0);
+
+        // ... or merged into a single execution after each overrun
+        final TimerStatistics coalesce = timers.get("coalesce");
+        Assert.assertEquals(OverrunPolicy.COALESCE, coalesce.getOverrunPolicy());
+        Assert.assertTrue(coalesce.getOverruns() > 1);
+        Assert.assertTrue(coalesce.getSkipped() >= coalesce.getOverruns() - 1);
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testParallelSpawning() {
+        final JSPFProperties props = new JSPFProperties();
+        props.setProperty(PluginManager.class, "classpath.scan.threads", "2");
+
+        final PluginManager parallel = PluginManagerFactory.createPluginManager(props);
+        parallel.addPluginsFrom(ClassURI.CLASSPATH, new OptionParallelSpawning(2));
+
+        final TestAnnotations plugin = parallel.getPlugin(TestAnnotations.class);
+
+        Assert.assertNotNull(plugin);
+        Assert.assertEquals(plugin.getInitStatus(), "INIT OK");
+        Assert.assertEquals(plugin.getInjectionStatus(), "INJECTION OK");
+
+        parallel.shutdown();
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testLazySpawning() {
+        final int initialized = TestLazyImpl.initialized;
+
+        // Listing plugins must not spawn them
+        final Collection<TestLazy> plugins = this.pm.getPlugins(TestLazy.class);
+        Assert.assertEquals(1, plugins.size());
+        Assert.assertEquals(initialized, TestLazyImpl.initialized);
+
+        final TestLazy plugin = this.pm.getPlugin(TestLazy.class);
+        Assert.assertSame(plugins.iterator().next(), plugin);
+        Assert.assertEquals(initialized + 1, TestLazyImpl.initialized);
+        Assert.assertEquals("LAZY OK", plugin.getStatus());
+
+        this.pm.getPlugin(TestLazy.class);
+        Assert.assertEquals(initialized + 1, TestLazyImpl.initialized);
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testLazySpawningTimers() {
+        final JSPFProperties props = new JSPFProperties();
+        props.setProperty(PluginManager.class, "spawn.lazy", "true");
+
+        final PluginManager manager = PluginManagerFactory.createPluginManager(props);
+        manager.addPluginsFrom(ClassURI.CLASSPATH);
+
+        // Plugins with timers are spawned right away, so their timers run without getPlugin()
+        boolean started = false;
+        for (TimerStatistics statistics : ((PluginManagerImpl) manager).getSpawner().getTimerStatistics()) {
+            if (statistics.getPluginClass() == TestTimerImpl.class) started = true;
+        }
+
+        manager.shutdown();
+
+        Assert.assertTrue(started);
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testClassModel() throws Exception {
+        final PluginClassModel model = new PluginClassModel(TestAnnotationsImpl.class);
+
+        Assert.assertEquals(2, model.injections.size());
+        Assert.assertEquals(1, model.initMethods.size());
+        Assert.assertEquals(2, model.threadMethods.size());
+        Assert.assertEquals(1, model.timerMethods.size());
+        Assert.assertEquals(1, model.pluginLoadedMethods.size());
+        Assert.assertEquals(1, model.capabilitiesMethods.size());
+
+        // Models stored in the cache must find their members again
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(model);
+        out.close();
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final PluginClassModel cached = (PluginClassModel) in.readObject();
+
+        Assert.assertNull(cached.initMethods.get(0).getMethod());
+        Assert.assertTrue(cached.resolve(TestAnnotationsImpl.class));
+        Assert.assertEquals(model.initMethods.get(0).getMethod(), cached.initMethods.get(0).getMethod());
+        Assert.assertEquals(model.timerMethods.get(0).period, cached.timerMethods.get(0).period);
+        Assert.assertFalse(cached.resolve(TestLazyImpl.class));
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testPluginLoaded() {
+        final TestAnnotations plugin = this.pm.getPlugin(TestAnnotations.class);
+        final PluginRegistry registry = ((PluginManagerImpl) this.pm).getPluginRegistry();
+        final PluginLoadedInformation pli = registry.getMetaInformationFor(plugin).pluginLoadedInformation.get(0);
+
+        // Every remote plugin must have been passed exactly once, no matter when it was loaded
+        final Collection<RemoteAPI> remotes = this.pm.getPlugins(RemoteAPI.class);
+        Assert.assertTrue(remotes.size() > 0);
+        Assert.assertEquals(remotes.size(), pli.calledWith.size());
+        Assert.assertTrue(pli.calledWith.containsAll(remotes));
     }
 }
@@ -35,6 +35,7 @@ import net.xeoh.plugins.base.PluginInformation;
 import net.xeoh.plugins.base.PluginInformation.Information;
 import net.xeoh.plugins.base.PluginManager;
 import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
 import net.xeoh.plugins.base.util.JSPFProperties;
 import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
 
@@ -87,4 +88,17 @@ public class PluginManagerCapabilities {
         Assert.assertTrue(information.size() > 0);
     }
 
+    /**
+     * 
+     */
+    @Test
+    public void testGetPluginWithCapabilities() {
+        final TestAnnotations ta = this.pm.getPlugin(TestAnnotations.class);
+
+        Assert.assertSame(ta, this.pm.getPlugin(TestAnnotations.class, new OptionCapabilities("SUNSHINE")));
+        Assert.assertSame(ta, this.pm.getPlugin(TestAnnotations.class, new OptionCapabilities("RAIN", "SUNSHINE")));
+        Assert.assertNull(this.pm.getPlugin(TestAnnotations.class, new OptionCapabilities("SUNSHINE", "SNOW")));
+        Assert.assertNull(this.pm.getPlugin(PluginInformation.class, new OptionCapabilities("SUNSHINE")));
+    }
+
 }
@@ -27,12 +27,44 @@
  */
 package net.xeoh.plugins.core;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
 import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.annotations.PluginImplementation;
+import net.xeoh.plugins.base.annotations.configuration.IsDisabled;
+import net.xeoh.plugins.base.annotations.meta.Version;
 import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.impl.PluginManagerImpl;
+import net.xeoh.plugins.base.impl.classpath.ClassFileInformation;
+import net.xeoh.plugins.base.impl.classpath.PluginIndex;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCache;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCache.HashMode;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCache.JARInformation;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCacheFormat;
+import net.xeoh.plugins.base.impl.classpath.cache.JARFingerprint;
+import net.xeoh.plugins.base.impl.classpath.locator.locations.JARClasspathLocation;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.PluginClassStatus;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
+import net.xeoh.plugins.base.impl.registry.PluginRegistry;
 import net.xeoh.plugins.base.util.JSPFProperties;
 import net.xeoh.plugins.base.util.uri.ClassURI;
 import net.xeoh.plugins.diagnosis.local.Diagnosis;
 import net.xeoh.plugins.remote.RemoteAPI;
+import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
+import net.xeoh.plugins.testplugins.testannotations.impl.TestAnnotationsImpl;
+import net.xeoh.plugins.testplugins.testshutdown.TestShutdown;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -45,6 +77,9 @@ import org.junit.Test;
  */
 public class PluginManagerLoadClasspath {
 
+    /** Time of all entries of our JARs, so JARs with equal content are equal */
+    private static final long ENTRY_TIME = 1300000000000L;
+
     private PluginManager pm;
 
     /**
@@ -103,4 +138,290 @@ public class PluginManagerLoadClasspath {
         System.out.println("Fin");
     }
 
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testClassFileInformation() throws Exception {
+        final InputStream stream = TestAnnotationsImpl.class.getResourceAsStream("TestAnnotationsImpl.class");
+        final ClassFileInformation information = ClassFileInformation.read(stream);
+
+        Assert.assertEquals("net/xeoh/plugins/testplugins/testannotations/impl/TestAnnotationsImpl", information.name);
+        Assert.assertEquals("net/xeoh/plugins/testplugins/testannotations/impl/TestAnnotationsAbtractImpl", information.superName);
+        Assert.assertEquals(0, information.interfaces.length);
+        Assert.assertFalse(information.isInterface());
+        Assert.assertTrue(information.hasAnnotation(PluginImplementation.class));
+        Assert.assertTrue(information.hasAnnotation(Version.class));
+        Assert.assertFalse(information.hasAnnotation(IsDisabled.class));
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testPluginIndex() throws Exception {
+        final String name = TestAnnotationsImpl.class.getName();
+        final List<String> interfaces = Arrays.asList(TestAnnotations.class.getName());
+
+        // An index listing a class of the JAR is used ...
+        final PluginIndex index = new PluginIndex(Arrays.asList(new PluginIndex.Entry(name, interfaces, new ArrayList<String>(), Arrays.asList("getCapabilities"))));
+        final JARClasspathLocation location = new JARClasspathLocation(null, "test", writeIndexedJAR(index, name));
+
+        Assert.assertEquals(Arrays.asList(name), location.getPredefinedPluginList());
+        Assert.assertEquals(interfaces, location.getPluginIndex().getEntries().get(0).interfaces);
+        Assert.assertEquals(Arrays.asList("getCapabilities"), location.getPluginIndex().getEntries().get(0).capabilities);
+
+        // ... a stale one is not
+        final PluginIndex stale = new PluginIndex(Arrays.asList(new PluginIndex.Entry(name + "Missing", interfaces, new ArrayList<String>(), new ArrayList<String>())));
+        final JARClasspathLocation staleLocation = new JARClasspathLocation(null, "test", writeIndexedJAR(stale, name));
+
+        Assert.assertNull(staleLocation.getPredefinedPluginList());
+
+        // Dependencies keep their capabilities, unknown ones stay unknown
+        final String dependency = PluginIndex.formatDependency(TestShutdown.class.getName(), new String[] { "A", "B" });
+        final PluginIndex withDependencies = new PluginIndex(Arrays.asList(new PluginIndex.Entry(name, interfaces, Arrays.asList(dependency), new ArrayList<String>())));
+        final JARClasspathLocation dependencyLocation = new JARClasspathLocation(null, "test", writeIndexedJAR(withDependencies, name));
+        final PluginIndex.Entry entry = dependencyLocation.getPluginIndex().getEntry(name);
+
+        Assert.assertEquals(Arrays.asList(dependency), entry.dependencies);
+        Assert.assertEquals(TestShutdown.class.getName(), PluginIndex.getDependencyType(dependency));
+        Assert.assertEquals(Arrays.asList("A", "B"), Arrays.asList(PluginIndex.getDependencyCapabilities(dependency)));
+        Assert.assertNull(PluginIndex.formatDependency(TestShutdown.class.getName(), new String[] { "A,B" }));
+
+        final PluginIndex unknown = new PluginIndex(Arrays.asList(new PluginIndex.Entry(name, interfaces, null, new ArrayList<String>())));
+        Assert.assertNull(new JARClasspathLocation(null, "test", writeIndexedJAR(unknown, name)).getPluginIndex().getEntry(name).dependencies);
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testPluginIndexDependencies() throws Exception {
+        final String name = TestAnnotationsImpl.class.getName();
+        final String dependency = PluginIndex.formatDependency(TestShutdown.class.getName(), new String[] { "NOBODY HAS THIS" });
+        final PluginIndex index = new PluginIndex(Arrays.asList(new PluginIndex.Entry(name, new ArrayList<String>(), Arrays.asList(dependency), new ArrayList<String>())));
+
+        // The loader takes the dependencies from the index instead of the class
+        this.pm.addPluginsFrom(writeIndexedJAR(index, name));
+
+        final PluginRegistry registry = ((PluginManagerImpl) this.pm).getPluginRegistry();
+        final PluginClassMetaInformation metaInformation = registry.getMetaInformationFor(TestAnnotationsImpl.class);
+        Assert.assertNotNull(metaInformation);
+        Assert.assertEquals(1, metaInformation.dependencies.size());
+
+        final Dependency d = metaInformation.dependencies.iterator().next();
+        Assert.assertEquals(TestShutdown.class, d.pluginClass);
+        Assert.assertEquals(Arrays.asList("NOBODY HAS THIS"), Arrays.asList(d.capabilites));
+        Assert.assertEquals(PluginClassStatus.CONTAINS_UNRESOLVED_DEPENDENCIES, metaInformation.pluginClassStatus);
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testJARCache() throws Exception {
+        final File cacheFile = File.createTempFile("jspf", ".cache");
+        cacheFile.deleteOnExit();
+
+        // Outdated caches are replaced
+        final FileWriter writer = new FileWriter(cacheFile);
+        writer.write("not a cache");
+        writer.close();
+
+        final URI jar = writeIndexedJAR(new PluginIndex(new ArrayList<PluginIndex.Entry>()), TestAnnotationsImpl.class.getName());
+        final String name = TestAnnotationsImpl.class.getName();
+
+        final JARCache cache = newJARCache(cacheFile);
+        cache.loadCache();
+
+        final JARInformation information = cache.getJARInformationFor(jar);
+        information.subclasses.put("key", Arrays.asList(name));
+        information.classModels.put(name, new PluginClassModel(TestAnnotationsImpl.class));
+        information.changed = true;
+        cache.saveCache();
+
+        // A second cache sees the same information
+        final JARCache other = newJARCache(cacheFile);
+        other.loadCache();
+
+        final JARInformation loaded = other.getJARInformationFor(jar);
+        Assert.assertFalse(loaded.changed);
+        Assert.assertEquals(Arrays.asList(name), loaded.subclasses.get("key"));
+        Assert.assertTrue(loaded.classModels.get(name).resolve(TestAnnotationsImpl.class));
+        Assert.assertEquals(information.classModels.get(name).initMethods.size(), loaded.classModels.get(name).initMethods.size());
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testJARCacheDamaged() throws Exception {
+        final File cacheFile = File.createTempFile("jspf", ".cache");
+        cacheFile.deleteOnExit();
+
+        // A valid header followed by a negative string table size ...
+        final DataOutputStream header = new DataOutputStream(new FileOutputStream(cacheFile));
+        header.writeInt(JARCacheFormat.MAGIC);
+        header.writeInt(JARCacheFormat.VERSION);
+        header.writeInt(-1);
+        header.close();
+        newJARCache(cacheFile).loadCache();
+
+        // ... a negative string index ...
+        final JARCacheFormat.Output index = new JARCacheFormat.Output();
+        index.writeInt(1);
+        index.writeInt(-1);
+        writeCacheFile(cacheFile, index);
+        newJARCache(cacheFile).loadCache();
+
+        // ... or a negative number of classes must not escape loadCache()
+        final JARCacheFormat.Output size = new JARCacheFormat.Output();
+        size.writeInt(1);
+        size.writeString("hash");
+        size.writeInt(-1);
+        writeCacheFile(cacheFile, size);
+
+        final URI jar = writeIndexedJAR(new PluginIndex(new ArrayList<PluginIndex.Entry>()), TestAnnotationsImpl.class.getName());
+
+        final JARCache cache = newJARCache(cacheFile);
+        cache.loadCache();
+
+        // The damaged file is regenerated
+        final JARInformation information = cache.getJARInformationFor(jar);
+        information.subclasses.put("key", Arrays.asList("value"));
+        information.changed = true;
+        cache.saveCache();
+
+        final JARCache other = newJARCache(cacheFile);
+        other.loadCache();
+        Assert.assertEquals(Arrays.asList("value"), other.getJARInformationFor(jar).subclasses.get("key"));
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testJARFingerprint() throws Exception {
+        final String name = TestAnnotationsImpl.class.getName();
+        final File jar = new File(writeIndexedJAR(new PluginIndex(new ArrayList<PluginIndex.Entry>()), name));
+        final File same = new File(writeIndexedJAR(new PluginIndex(new ArrayList<PluginIndex.Entry>()), name));
+        final File other = new File(writeIndexedJAR(new PluginIndex(Arrays.asList(new PluginIndex.Entry(name, new ArrayList<String>(), new ArrayList<String>(), new ArrayList<String>()))), name));
+
+        // Only the table of contents counts, which includes the CRCs of all entries
+        Assert.assertTrue(JARFingerprint.fast(jar).startsWith("fast:"));
+        Assert.assertEquals(JARFingerprint.fast(jar), JARFingerprint.fast(same));
+        Assert.assertFalse(JARFingerprint.fast(jar).equals(JARFingerprint.fast(other)));
+
+        Assert.assertEquals(32 + 4, JARFingerprint.strong(jar).length());
+        Assert.assertFalse(JARFingerprint.strong(jar).equals(JARFingerprint.strong(other)));
+
+        // Fast mode identifies the JAR by its fingerprint
+        final File cacheFile = File.createTempFile("jspf", ".cache");
+        cacheFile.deleteOnExit();
+
+        final JARCache cache = newJARCache(cacheFile);
+        cache.setHashMode(HashMode.FAST);
+        Assert.assertSame(cache.getJARInformationFor(jar.toURI()), cache.getJARInformationFor(same.toURI()));
+        Assert.assertNotSame(cache.getJARInformationFor(jar.toURI()), cache.getJARInformationFor(other.toURI()));
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testJARCacheEviction() throws Exception {
+        final File cacheFile = File.createTempFile("jspf", ".cache");
+        cacheFile.deleteOnExit();
+
+        final String name = TestAnnotationsImpl.class.getName();
+        final List<PluginIndex.Entry> entries = new ArrayList<PluginIndex.Entry>();
+        final URI[] jars = new URI[3];
+        for (int i = 0; i < jars.length; i++) {
+            // Different indices, so the JARs have different fingerprints
+            jars[i] = writeIndexedJAR(new PluginIndex(entries), name);
+            entries.add(new PluginIndex.Entry(name, new ArrayList<String>(), new ArrayList<String>(), new ArrayList<String>()));
+        }
+
+        // The first JAR is the least recently used
+        final JARCache cache = newJARCache(cacheFile);
+        cache.setHashMode(HashMode.FAST);
+        cache.setMaxEntries(2);
+        cache.getJARInformationFor(jars[0]).lastAccess = 1000;
+        cache.getJARInformationFor(jars[1]);
+        cache.getJARInformationFor(jars[2]);
+        cache.saveCache();
+
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+        Assert.assertEquals(2, cache.getStatistics().getEntries());
+        Assert.assertEquals(3, cache.getStatistics().getMisses());
+
+        final JARCache other = newJARCache(cacheFile);
+        other.setHashMode(HashMode.FAST);
+        other.loadCache();
+        other.getJARInformationFor(jars[2]);
+        other.getJARInformationFor(jars[0]);
+        Assert.assertEquals(1, other.getStatistics().getHits());
+        Assert.assertEquals(1, other.getStatistics().getMisses());
+    }
+
+    /**
+     * Overwrites the given file with the content of the output.
+     * 
+     * @param file
+     * @param output
+     * @throws Exception
+     */
+    private void writeCacheFile(File file, JARCacheFormat.Output output) throws Exception {
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            output.finish(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * @param file
+     * @return An enabled cache using the given file.
+     */
+    private JARCache newJARCache(File file) {
+        final JARCache cache = new JARCache();
+        cache.setEnabled(true);
+        cache.setCachePath(file.getAbsolutePath());
+        return cache;
+    }
+
+    /**
+     * Writes a temporary JAR containing the given index and class.
+     * 
+     * @param index
+     * @param name
+     * @return The JAR's URI.
+     * @throws Exception
+     */
+    private URI writeIndexedJAR(PluginIndex index, String name) throws Exception {
+        final File file = File.createTempFile("jspf.index", ".jar");
+        file.deleteOnExit();
+
+        final JarOutputStream jar = new JarOutputStream(new FileOutputStream(file));
+        final JarEntry indexEntry = new JarEntry(PluginIndex.LOCATION);
+        indexEntry.setTime(ENTRY_TIME);
+        jar.putNextEntry(indexEntry);
+        index.write(jar);
+
+        final String entry = ClassFileInformation.getInternalName(name) + ".class";
+        final InputStream stream = getClass().getClassLoader().getResourceAsStream(entry);
+        final byte[] buffer = new byte[4096];
+        final JarEntry classEntry = new JarEntry(entry);
+        classEntry.setTime(ENTRY_TIME);
+        jar.putNextEntry(classEntry);
+        for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+            jar.write(buffer, 0, read);
+        }
+        stream.close();
+        jar.close();
+
+        return file.toURI();
+    }
+
 }
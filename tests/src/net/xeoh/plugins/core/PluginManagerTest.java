@@ -33,15 +33,31 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 
 import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.PluginInformation;
 import net.xeoh.plugins.base.PluginInformation.Information;
 import net.xeoh.plugins.base.PluginManager;
 import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.impl.PluginManagerImpl;
+import net.xeoh.plugins.base.impl.registry.DependencyResolver;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.Dependency;
+import net.xeoh.plugins.base.impl.registry.PluginClassMetaInformation.PluginClassStatus;
+import net.xeoh.plugins.base.impl.registry.PluginMetaInformation;
+import net.xeoh.plugins.base.impl.registry.PluginMetaInformation.PluginStatus;
+import net.xeoh.plugins.base.impl.registry.PluginRegistry;
+import net.xeoh.plugins.base.impl.registry.RegistrySnapshot;
+import net.xeoh.plugins.base.impl.spawning.SpawnResult;
+import net.xeoh.plugins.base.impl.spawning.SpawnWatchdog;
 import net.xeoh.plugins.base.options.getplugin.OptionPluginSelector;
 import net.xeoh.plugins.base.options.getplugin.PluginSelector;
+import net.xeoh.plugins.base.util.PluginManagerUtil;
 import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
+import net.xeoh.plugins.testplugins.testannotations.impl.TestAnnotationsImpl;
+import net.xeoh.plugins.testplugins.testshutdown.impl.TestShutdownImpl;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -127,6 +143,121 @@ public class PluginManagerTest {
 
     }
     
+    /**
+     * 
+     */
+    @Test
+    public void testGetPlugins() {
+        final PluginManagerUtil pmu = new PluginManagerUtil(this.pm);
+
+        final Collection<Plugin> all = pmu.getPlugins();
+        Assert.assertTrue(all.contains(this.pm));
+        Assert.assertTrue(all.contains(this.pm.getPlugin(TestAnnotations.class)));
+
+        final Collection<PluginInformation> infos = pmu.getPlugins(PluginInformation.class);
+        Assert.assertEquals(1, infos.size());
+        Assert.assertSame(this.pm.getPlugin(PluginInformation.class), infos.iterator().next());
+
+        final Collection<Plugin> none = this.pm.getPlugins(Plugin.class, new OptionPluginSelector<Plugin>(new PluginSelector<Plugin>() {
+            public boolean selectPlugin(Plugin plugin) {
+                return false;
+            }
+        }));
+        Assert.assertTrue(none.isEmpty());
+
+        final Iterator<TestAnnotations> iterator = this.pm.iteratePlugins(TestAnnotations.class);
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertSame(this.pm.getPlugin(TestAnnotations.class), iterator.next());
+    }
+    
+    /**
+     * 
+     */
+    @Test
+    public void testSnapshot() {
+        final PluginRegistry registry = ((PluginManagerImpl) this.pm).getPluginRegistry();
+        final RegistrySnapshot snapshot = registry.getSnapshot();
+
+        // Lookups don't change anything
+        this.pm.getPlugin(TestAnnotations.class);
+        Assert.assertEquals(snapshot.getEpoch(), registry.getEpoch());
+
+        // Registering does, old snapshots stay as they were
+        final int size = snapshot.getPlugins().size();
+        ((PluginManagerImpl) this.pm).hookPlugin(new SpawnResult(new TestAnnotationsImpl()));
+        Assert.assertTrue(registry.getEpoch() > snapshot.getEpoch());
+        Assert.assertEquals(size, snapshot.getPlugins().size());
+        Assert.assertEquals(size + 1, registry.getAllPlugins().size());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testUnresolvedLookups() {
+        final PluginRegistry registry = new PluginRegistry();
+        final TestAnnotationsImpl plugin = new TestAnnotationsImpl();
+        final PluginMetaInformation metaInformation = new PluginMetaInformation();
+        metaInformation.capabilities = Collections.singleton("SUNSHINE");
+
+        // Misses are remembered ...
+        Assert.assertFalse(registry.hasActivePluginWith(TestAnnotations.class, new String[] { "SUNSHINE" }));
+        Assert.assertFalse(registry.hasActivePluginWith(TestAnnotations.class, new String[] { "SUNSHINE" }));
+
+        // ... but not beyond activation
+        registry.registerPlugin(plugin, metaInformation);
+        Assert.assertFalse(registry.hasActivePluginWith(TestAnnotations.class, new String[] { "SUNSHINE" }));
+        registry.activatePlugin(plugin);
+        Assert.assertTrue(registry.hasActivePluginWith(TestAnnotations.class, new String[] { "SUNSHINE" }));
+        Assert.assertFalse(registry.hasActivePluginWith(TestAnnotations.class, new String[] { "SUNSHINE", "SNOW" }));
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testDependencyResolver() {
+        final PluginRegistry registry = new PluginRegistry();
+        final DependencyResolver resolver = registry.getDependencyResolver();
+
+        final Dependency dependency = new Dependency();
+        dependency.pluginClass = TestAnnotations.class;
+        dependency.capabilites = new String[] { "SUNSHINE" };
+
+        final PluginClassMetaInformation classMeta = new PluginClassMetaInformation();
+        classMeta.dependencies.add(dependency);
+        resolver.addClass(TestShutdownImpl.class, classMeta);
+
+        Assert.assertEquals(PluginClassStatus.CONTAINS_UNRESOLVED_DEPENDENCIES, classMeta.pluginClassStatus);
+        Assert.assertNull(resolver.nextSpawnable());
+
+        // A provider lacking the capability does not resolve it ...
+        final TestAnnotationsImpl plugin = new TestAnnotationsImpl();
+        final PluginMetaInformation metaInformation = new PluginMetaInformation();
+        metaInformation.capabilities = Collections.<String> emptySet();
+        metaInformation.pluginStatus = PluginStatus.ACTIVE;
+        registry.registerPlugin(plugin, metaInformation);
+        Assert.assertNull(resolver.nextSpawnable());
+
+        // ... until it has it
+        registry.updateCapabilities(plugin, Collections.singleton("SUNSHINE"));
+        Assert.assertEquals(TestShutdownImpl.class, resolver.nextSpawnable());
+        Assert.assertEquals(PluginClassStatus.SPAWNABLE, classMeta.pluginClassStatus);
+        Assert.assertNull(resolver.nextSpawnable());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testSpawnDurations() {
+        final SpawnWatchdog watchdog = ((PluginManagerImpl) this.pm).getSpawner().getWatchdog();
+
+        Assert.assertTrue(watchdog.getSpawnDurations().getCount() > 0);
+        Assert.assertTrue(watchdog.getPluginDurations().containsKey(TestAnnotationsImpl.class));
+        Assert.assertTrue(watchdog.getPluginDurations().get(TestAnnotationsImpl.class)[1] >= 0);
+    }
+
     /**
      * 
      */
@@ -28,13 +28,19 @@
 package net.xeoh.plugins.core;
 
 import java.net.URI;
+import java.util.Map;
 
+import net.xeoh.plugins.base.Plugin;
 import net.xeoh.plugins.base.PluginConfiguration;
 import net.xeoh.plugins.base.PluginManager;
 import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.impl.PluginManagerImpl;
 import net.xeoh.plugins.base.util.JSPFProperties;
 import net.xeoh.plugins.base.util.uri.ClassURI;
 import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
+import net.xeoh.plugins.testplugins.testannotations.impl.TestAnnotationsImpl;
+import net.xeoh.plugins.testplugins.testshutdown.TestShutdown;
+import net.xeoh.plugins.testplugins.testshutdown.impl.TestShutdownImpl;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -76,6 +82,84 @@ public class ShutdownTest {
 
     }
 
+    /**
+     * 
+     */
+    @Test
+    public void testShutdownTimeout() {
+        JSPFProperties pros = new JSPFProperties();
+        pros.setProperty(PluginManager.class, "logging.level", "WARNING");
+        pros.setProperty(PluginManager.class, "shutdown.timeout", "100");
+        pros.setProperty(TestShutdownImpl.class, "shutdown.delay", "5000");
+
+        final PluginManager manager = PluginManagerFactory.createPluginManager(pros);
+        manager.addPluginsFrom(ClassURI.CLASSPATH);
+
+        final TestShutdown plugin = manager.getPlugin(TestShutdown.class);
+        Assert.assertNotNull(plugin);
+
+        final long start = System.currentTimeMillis();
+        manager.shutdown();
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+
+        final Map<Plugin, Long> overruns = ((PluginManagerImpl) manager).getShutdownOverruns();
+        Assert.assertTrue(overruns.containsKey(plugin));
+        Assert.assertNull(manager.getPlugin(TestShutdown.class));
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testShutdownOrder() {
+        final TestShutdownImpl shutdown = (TestShutdownImpl) this.pm.getPlugin(TestShutdown.class);
+        final TestAnnotationsImpl annotations = (TestAnnotationsImpl) this.pm.getPlugin(TestAnnotations.class);
+        Assert.assertNotNull(shutdown);
+        Assert.assertNotNull(annotations);
+
+        this.pm.shutdown();
+
+        // TestShutdownImpl depends on TestAnnotations, so it has to go first
+        Assert.assertTrue(shutdown.shutdownTime != 0);
+        Assert.assertTrue(annotations.shutdownTime != 0);
+        Assert.assertTrue(shutdown.shutdownTime <= annotations.shutdownTime);
+    }
+
+    /**
+     * @throws InterruptedException
+     */
+    @Test
+    public void testShutdownDeadline() throws InterruptedException {
+        JSPFProperties pros = new JSPFProperties();
+        pros.setProperty(PluginManager.class, "logging.level", "WARNING");
+        pros.setProperty(PluginManager.class, "shutdown.timeout", "5000");
+        pros.setProperty(PluginManager.class, "shutdown.deadline", "100");
+        pros.setProperty(TestShutdownImpl.class, "shutdown.delay", "1000");
+
+        final PluginManager manager = PluginManagerFactory.createPluginManager(pros);
+        manager.addPluginsFrom(ClassURI.CLASSPATH);
+
+        final TestShutdownImpl shutdown = (TestShutdownImpl) manager.getPlugin(TestShutdown.class);
+        final TestAnnotationsImpl annotations = (TestAnnotationsImpl) manager.getPlugin(TestAnnotations.class);
+        Assert.assertNotNull(shutdown);
+        Assert.assertNotNull(annotations);
+
+        final long start = System.currentTimeMillis();
+        manager.shutdown();
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+
+        // Nobody waits for the plugin still shutting down ...
+        final Map<Plugin, Long> overruns = ((PluginManagerImpl) manager).getShutdownOverruns();
+        Assert.assertEquals(0, shutdown.shutdownTime);
+        Assert.assertEquals(Long.valueOf(-1), overruns.get(shutdown));
+
+        // ... but the plugins left at the deadline are still destroyed in the background
+        for (int i = 0; i < 50 && annotations.shutdownTime == 0; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(annotations.shutdownTime != 0);
+    }
+
     /**
      * 
      */
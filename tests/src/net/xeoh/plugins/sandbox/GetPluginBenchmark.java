@@ -0,0 +1,100 @@
+/*
+ * GetPluginBenchmark.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.sandbox;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+
+import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.options.GetPluginOption;
+import net.xeoh.plugins.base.options.getplugin.OptionCapabilities;
+import net.xeoh.plugins.base.util.JSPFProperties;
+import net.xeoh.plugins.diagnosis.local.Diagnosis;
+import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
+
+/**
+ * Measures time and allocated bytes per getPlugin() call with diagnosis disabled. 
+ * Requires a VM that supports thread allocation accounting (e.g., HotSpot).
+ * 
+ * @author rb
+ */
+public class GetPluginBenchmark {
+    /** Number of calls per round */
+    static final int CALLS = 1000000;
+
+    /** Prevents the calls from being optimized away */
+    static int sink = 0;
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final JSPFProperties props = new JSPFProperties();
+        props.setProperty(Diagnosis.class, "general.enabled", "false");
+
+        final PluginManager pm = PluginManagerFactory.createPluginManager(props);
+        pm.addPluginsFrom(new URI("classpath://net.xeoh.plugins.testplugins.testannotations.impl.*"));
+
+        // Options are allocated once, so we don't measure the varargs arrays of the call site
+        final GetPluginOption[] none = new GetPluginOption[0];
+        final GetPluginOption[] caps = new GetPluginOption[] { new OptionCapabilities("SUNSHINE") };
+
+        for (int round = 0; round < 5; round++) {
+            measure(pm, "plain", none);
+            measure(pm, "capabilities", caps);
+        }
+
+        pm.shutdown();
+    }
+
+    /**
+     * Measures one round of calls and prints the results.
+     * 
+     * @param pm
+     * @param name
+     * @param options
+     */
+    private static void measure(PluginManager pm, String name, GetPluginOption[] options) {
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long id = Thread.currentThread().getId();
+
+        final long bytesBefore = bean.getThreadAllocatedBytes(id);
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < CALLS; i++) {
+            if (pm.getPlugin(TestAnnotations.class, options) != null) sink++;
+        }
+
+        final long time = System.nanoTime() - start;
+        final long bytes = bean.getThreadAllocatedBytes(id) - bytesBefore;
+
+        System.out.println(name + ": " + (time / CALLS) + " ns/op, " + ((double) bytes / CALLS) + " bytes/op");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * InvokerBenchmark.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.sandbox;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import net.xeoh.plugins.base.annotations.Timer;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel.Member;
+
+/**
+ * Compares the cost of calling a &#064;Timer method the way the spawner used to (fresh
+ * argument array on every call), through the bound {@link Member} of a 
+ * {@link PluginClassModel}, and directly. Requires a VM that supports thread 
+ * allocation accounting (e.g., HotSpot).
+ * 
+ * @author rb
+ */
+public class InvokerBenchmark {
+    /** Number of calls per round */
+    static final int CALLS = 10000000;
+
+    /** Some timer */
+    public static class Ticker {
+        /** Prevents the calls from being optimized away */
+        int ticks = 0;
+
+        /**
+         * @return .
+         */
+        @Timer(period = 10)
+        public boolean tick() {
+            this.ticks++;
+            return false;
+        }
+    }
+
+    /** A round of calls */
+    static interface Round {
+        /**
+         * @param ticker
+         * @throws Exception
+         */
+        public void run(Ticker ticker) throws Exception;
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final Ticker ticker = new Ticker();
+        final Member member = new PluginClassModel(Ticker.class).timerMethods.get(0);
+        final Method method = Ticker.class.getMethod("tick");
+
+        for (int round = 0; round < 5; round++) {
+            measure("reflective", ticker, new Round() {
+                public void run(Ticker t) throws Exception {
+                    for (int i = 0; i < CALLS; i++) {
+                        method.invoke(t, new Object[0]);
+                    }
+                }
+            });
+
+            measure("member", ticker, new Round() {
+                public void run(Ticker t) throws Exception {
+                    for (int i = 0; i < CALLS; i++) {
+                        member.invoke(t);
+                    }
+                }
+            });
+
+            measure("direct", ticker, new Round() {
+                public void run(Ticker t) throws Exception {
+                    for (int i = 0; i < CALLS; i++) {
+                        t.tick();
+                    }
+                }
+            });
+        }
+
+        System.out.println("(" + ticker.ticks + " ticks)");
+    }
+
+    /**
+     * Measures one round of calls and prints the results.
+     * 
+     * @param name
+     * @param ticker
+     * @param round
+     * @throws Exception
+     */
+    private static void measure(String name, Ticker ticker, Round round) throws Exception {
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long id = Thread.currentThread().getId();
+
+        final long bytesBefore = bean.getThreadAllocatedBytes(id);
+        final long start = System.nanoTime();
+
+        round.run(ticker);
+
+        final long time = System.nanoTime() - start;
+        final long bytes = bean.getThreadAllocatedBytes(id) - bytesBefore;
+
+        System.out.println(name + ": " + ((double) time / CALLS) + " ns/op, " + ((double) bytes / CALLS) + " bytes/op");
+    }
+}
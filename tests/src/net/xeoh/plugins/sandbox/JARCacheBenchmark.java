@@ -0,0 +1,141 @@
+/*
+ * JARCacheBenchmark.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.sandbox;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.annotations.PluginImplementation;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCache;
+import net.xeoh.plugins.base.impl.classpath.cache.JARCache.JARInformation;
+import net.xeoh.plugins.base.impl.registry.PluginClassModel;
+import net.xeoh.plugins.testplugins.testannotations.impl.TestAnnotationsImpl;
+
+/**
+ * Compares loading and saving a JAR cache with many entries in the binary format to 
+ * the Java serialization used before.
+ * 
+ * @author rb
+ */
+public class JARCacheBenchmark {
+    /** Number of JARs in the cache */
+    static final int JARS = 500;
+
+    /** Number of plugins per JAR */
+    static final int PLUGINS = 20;
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final File root = File.createTempFile("jspf", "benchmark");
+        root.delete();
+        root.mkdirs();
+
+        final File binary = new File(root, "binary.cache");
+        final File serialized = new File(root, "serialized.cache");
+
+        // Fill a cache, weak mode only looks at name and size of the files
+        final JARCache cache = newCache(binary);
+        final Map<String, JARInformation> map = new HashMap<String, JARInformation>();
+
+        for (int j = 0; j < JARS; j++) {
+            final File jar = new File(root, "plugin" + j + ".jar");
+            final FileWriter writer = new FileWriter(jar);
+            writer.write("jar" + j);
+            writer.close();
+
+            final JARInformation information = cache.getJARInformationFor(jar.toURI());
+            final Collection<String> subclasses = new ArrayList<String>();
+            for (int i = 0; i < PLUGINS; i++) {
+                subclasses.add("net.xeoh.plugins.bench.j" + j + ".Service" + i + "Impl");
+                information.classModels.put(TestAnnotationsImpl.class.getName() + i, new PluginClassModel(TestAnnotationsImpl.class));
+            }
+            information.subclasses.put(Plugin.class.getName() + "@" + PluginImplementation.class.getName(), subclasses);
+            information.changed = true;
+            map.put("weak:" + jar.getName(), information);
+        }
+
+        for (int round = 0; round < 5; round++) {
+            // Serialization
+            long start = System.nanoTime();
+            final ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(serialized));
+            oos.writeObject(map);
+            oos.close();
+            final long serializedSave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final ObjectInputStream ois = new ObjectInputStream(new FileInputStream(serialized));
+            ois.readObject();
+            ois.close();
+            final long serializedLoad = System.nanoTime() - start;
+
+            // Binary format
+            for (JARInformation information : map.values()) {
+                information.changed = true;
+            }
+
+            start = System.nanoTime();
+            cache.saveCache();
+            final long binarySave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            newCache(binary).loadCache();
+            final long binaryLoad = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            cache.saveCache();
+            final long unchangedSave = System.nanoTime() - start;
+
+            System.out.println("serialization: save " + serializedSave / 1000000 + " ms, load " + serializedLoad / 1000000 + " ms, " + serialized.length() / 1024 + " kB");
+            System.out.println("binary:        save " + binarySave / 1000000 + " ms, load " + binaryLoad / 1000000 + " ms, " + binary.length() / 1024 + " kB, unchanged save " + unchangedSave / 1000 + " us");
+        }
+    }
+
+    /**
+     * @param file
+     * @return A new enabled cache in weak mode.
+     */
+    private static JARCache newCache(File file) {
+        final JARCache cache = new JARCache();
+        cache.setEnabled(true);
+        cache.setWeakMode(true);
+        cache.setCachePath(file.getAbsolutePath());
+        return cache;
+    }
+}
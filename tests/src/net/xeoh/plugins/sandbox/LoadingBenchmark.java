@@ -0,0 +1,167 @@
+/*
+ * LoadingBenchmark.java
+ * 
+ * Copyright (c) 2011, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.sandbox;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import net.xeoh.plugins.base.Plugin;
+import net.xeoh.plugins.base.PluginManager;
+import net.xeoh.plugins.base.impl.PluginManagerFactory;
+import net.xeoh.plugins.base.util.JSPFProperties;
+import net.xeoh.plugins.diagnosis.local.Diagnosis;
+
+/**
+ * Measures how long <code>addPluginsFrom()</code> takes for a directory of synthetic 
+ * plugin JARs. Every plugin depends on the next plugin of its JAR, so most classes 
+ * can only be spawned after classes found later were registered (JARs can't see each 
+ * other's classes). Requires a JDK (for the compiler).
+ * 
+ * @author rb
+ */
+public class LoadingBenchmark {
+    /** Number of JARs to generate */
+    static final int JARS = 20;
+
+    /** Number of plugins per JAR */
+    static final int PLUGINS = 50;
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final File root = File.createTempFile("jspf", "benchmark");
+        root.delete();
+
+        final File plugins = new File(root, "plugins");
+        plugins.mkdirs();
+        generate(root, plugins);
+
+        for (int round = 0; round < 5; round++) {
+            final JSPFProperties props = new JSPFProperties();
+            props.setProperty(Diagnosis.class, "general.enabled", "false");
+            props.setProperty(PluginManager.class, "cache.enabled", "false");
+
+            final PluginManager pm = PluginManagerFactory.createPluginManager(props);
+
+            final long start = System.nanoTime();
+            pm.addPluginsFrom(plugins.toURI());
+            final long time = System.nanoTime() - start;
+
+            final int loaded = pm.getPlugins(Plugin.class).size();
+            System.out.println("addPluginsFrom: " + time / 1000000 + " ms, " + loaded + " plugins");
+
+            pm.shutdown();
+        }
+    }
+
+    /**
+     * Generates, compiles and packages all plugins.
+     * 
+     * @param root
+     * @param plugins
+     * @throws IOException
+     */
+    private static void generate(File root, File plugins) throws IOException {
+        final File sources = new File(root, "src");
+        final File classes = new File(root, "classes");
+        classes.mkdirs();
+
+        final List<String> files = new ArrayList<String>();
+        for (int j = 0; j < JARS; j++) {
+            final File pkg = new File(sources, "bench/j" + j);
+            pkg.mkdirs();
+
+            for (int i = 0; i < PLUGINS; i++) {
+                final String service = "Service" + i;
+                final String dependency = i + 1 < PLUGINS ? "    @net.xeoh.plugins.base.annotations.injections.InjectPlugin\n    public Service" + (i + 1) + " next;\n" : "";
+
+                files.add(write(new File(pkg, service + ".java"), "package bench.j" + j + ";\n" + 
+                          "public interface " + service + " extends net.xeoh.plugins.base.Plugin {}\n"));
+                files.add(write(new File(pkg, service + "Impl.java"), "package bench.j" + j + ";\n" + 
+                          "@net.xeoh.plugins.base.annotations.PluginImplementation\n" + 
+                          "public class " + service + "Impl implements " + service + " {\n" + dependency + "}\n"));
+            }
+        }
+
+        final List<String> arguments = new ArrayList<String>();
+        arguments.add("-nowarn");
+        arguments.add("-cp");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.add("-d");
+        arguments.add(classes.getAbsolutePath());
+        arguments.addAll(files);
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) throw new IOException("Compilation failed");
+
+        for (int j = 0; j < JARS; j++) {
+            final File pkg = new File(classes, "bench/j" + j);
+            final JarOutputStream jar = new JarOutputStream(new FileOutputStream(new File(plugins, "plugin" + j + ".jar")));
+
+            for (File file : pkg.listFiles()) {
+                jar.putNextEntry(new JarEntry("bench/j" + j + "/" + file.getName()));
+
+                final FileInputStream in = new FileInputStream(file);
+                final byte[] buffer = new byte[4096];
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    jar.write(buffer, 0, read);
+                }
+                in.close();
+
+                jar.closeEntry();
+            }
+
+            jar.close();
+        }
+    }
+
+    /**
+     * @param file
+     * @param content
+     * @return The path of the file.
+     * @throws IOException
+     */
+    private static String write(File file, String content) throws IOException {
+        final FileWriter writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+        return file.getAbsolutePath();
+    }
+}
@@ -49,6 +49,11 @@ public interface TestAnnotations extends TestCore {
      */
     public String getThreadStatus(); // 'THREAD OK'
 
+    /**
+     * @return .
+     */
+    public String getControlledThreadStatus(); // 'CONTROLLED THREAD OK'
+
     /**
      * @return .
      */
@@ -27,8 +27,10 @@
  */
 package net.xeoh.plugins.testplugins.testannotations.impl;
 
+import net.xeoh.plugins.base.ThreadController;
 import net.xeoh.plugins.base.annotations.Capabilities;
 import net.xeoh.plugins.base.annotations.Thread;
+import net.xeoh.plugins.base.annotations.Thread.ExecutionMode;
 import net.xeoh.plugins.base.annotations.Timer;
 import net.xeoh.plugins.base.annotations.events.Init;
 import net.xeoh.plugins.base.annotations.events.PluginLoaded;
@@ -57,6 +59,8 @@ public class TestAnnotationsAbtractImpl implements TestAnnotations {
 
     String thread = "THREAD FAILED";
 
+    String controlledThread = "CONTROLLED THREAD FAILED";
+
     String timer = "TIMER FAILED";
 
     /**
@@ -80,6 +84,10 @@ public class TestAnnotationsAbtractImpl implements TestAnnotations {
         return this.thread;
     }
 
+    public String getControlledThreadStatus() {
+        return this.controlledThread;
+    }
+
     public String getTimerStatus() {
         return this.timer;
     }
@@ -102,6 +110,16 @@ public class TestAnnotationsAbtractImpl implements TestAnnotations {
         this.thread = "THREAD OK";
     }
 
+    /**
+     * @param controller
+     */
+    @Thread(executionMode = ExecutionMode.POOLED)
+    public void controlledThreadMeLala(ThreadController controller) {
+        while (controller.sleep(10)) {
+            this.controlledThread = "CONTROLLED THREAD OK";
+        }
+    }
+
     /**
      * 
      */
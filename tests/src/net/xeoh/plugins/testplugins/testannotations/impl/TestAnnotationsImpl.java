@@ -31,6 +31,7 @@ import java.lang.reflect.Method;
 
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import net.xeoh.plugins.base.annotations.configuration.ConfigurationFile;
+import net.xeoh.plugins.base.annotations.events.Shutdown;
 import net.xeoh.plugins.base.annotations.meta.Author;
 import net.xeoh.plugins.base.annotations.meta.Version;
 
@@ -43,6 +44,17 @@ import net.xeoh.plugins.base.annotations.meta.Version;
 @ConfigurationFile(file="config.properties")
 @PluginImplementation
 public class TestAnnotationsImpl extends TestAnnotationsAbtractImpl {
+
+    /** When we were shut down (System.nanoTime()), 0 if not yet */
+    public volatile long shutdownTime = 0;
+
+    /**
+     * 
+     */
+    @Shutdown
+    public void shutdownMeLala() {
+        this.shutdownTime = System.nanoTime();
+    }
     
     public static void main(String[] args) {
         for (final Method method : TestAnnotationsImpl.class.getMethods()) {
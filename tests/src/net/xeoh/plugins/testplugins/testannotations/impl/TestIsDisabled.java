@@ -77,6 +77,10 @@ public class TestIsDisabled implements TestAnnotations {
         return null;
     }
 
+    public String getControlledThreadStatus() {
+        return null;
+    }
+
     public String getTimerStatus() {
         // TODO Auto-generated method stub
         return null;
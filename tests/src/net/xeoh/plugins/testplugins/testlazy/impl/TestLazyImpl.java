@@ -0,0 +1,68 @@
+/*
+ * TestLazyImpl.java
+ *
+ * Copyright (c) 2008, Ralf Biedert All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package net.xeoh.plugins.testplugins.testlazy.impl;
+
+import net.xeoh.plugins.base.annotations.PluginImplementation;
+import net.xeoh.plugins.base.annotations.configuration.IsLazy;
+import net.xeoh.plugins.base.annotations.events.Init;
+import net.xeoh.plugins.base.annotations.injections.InjectPlugin;
+import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
+import net.xeoh.plugins.testplugins.testlazy.TestLazy;
+
+/**
+ * @author rb
+ *
+ */
+@IsLazy
+@PluginImplementation
+public class TestLazyImpl implements TestLazy {
+
+    /** Number of instances initialized so far */
+    public static volatile int initialized = 0;
+
+    /**
+     * 
+     */
+    @InjectPlugin
+    public TestAnnotations annotations;
+
+    /**
+     * 
+     */
+    @Init
+    public void init() {
+        initialized++;
+    }
+
+    /* (non-Javadoc)
+     * @see net.xeoh.plugins.testplugins.testlazy.TestLazy#getStatus()
+     */
+    public String getStatus() {
+        return this.annotations == null ? "INJECTION MISSING" : "LAZY OK";
+    }
+}
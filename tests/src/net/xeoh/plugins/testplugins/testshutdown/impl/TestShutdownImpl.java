@@ -0,0 +1,70 @@
+/*
+ * TestShutdownImpl.java
+ *
+ * Copyright (c) 2008, Ralf Biedert All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package net.xeoh.plugins.testplugins.testshutdown.impl;
+
+import net.xeoh.plugins.base.PluginConfiguration;
+import net.xeoh.plugins.base.annotations.PluginImplementation;
+import net.xeoh.plugins.base.annotations.events.Shutdown;
+import net.xeoh.plugins.base.annotations.injections.InjectPlugin;
+import net.xeoh.plugins.base.util.PluginConfigurationUtil;
+import net.xeoh.plugins.testplugins.testannotations.TestAnnotations;
+import net.xeoh.plugins.testplugins.testshutdown.TestShutdown;
+
+/**
+ * Takes as long to shut down as its configuration key <code>shutdown.delay</code> says.
+ * 
+ * @author rb
+ *
+ */
+@PluginImplementation
+public class TestShutdownImpl implements TestShutdown {
+
+    /**
+     * 
+     */
+    @InjectPlugin
+    public TestAnnotations annotations;
+
+    /**
+     * 
+     */
+    @InjectPlugin
+    public PluginConfiguration configuration;
+
+    /** When we were done shutting down (System.nanoTime()), 0 if not yet */
+    public volatile long shutdownTime = 0;
+
+    /**
+     * @throws InterruptedException
+     */
+    @Shutdown
+    public void shutdown() throws InterruptedException {
+        Thread.sleep(new PluginConfigurationUtil(this.configuration).getInt(TestShutdownImpl.class, "shutdown.delay", Integer.valueOf(0)));
+        this.shutdownTime = System.nanoTime();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * TestTimerImpl.java
+ * 
+ * Copyright (c) 2008, Ralf Biedert All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer. Redistributions in binary form must reproduce the
+ * above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the author nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+package net.xeoh.plugins.testplugins.testtimer.impl;
+
+import net.xeoh.plugins.base.PluginConfiguration;
+import net.xeoh.plugins.base.annotations.PluginImplementation;
+import net.xeoh.plugins.base.annotations.Timer;
+import net.xeoh.plugins.base.annotations.Timer.OverrunPolicy;
+import net.xeoh.plugins.base.annotations.Timer.TimerType;
+import net.xeoh.plugins.base.annotations.events.Init;
+import net.xeoh.plugins.base.annotations.injections.InjectPlugin;
+import net.xeoh.plugins.base.util.PluginConfigurationUtil;
+import net.xeoh.plugins.testplugins.testtimer.TestTimer;
+
+/**
+ * Has one rate based timer per overrun policy, each tick taking as long as the 
+ * configuration key <code>tick.duration</code> says. If the key is not set, all 
+ * timers cancel themselves on their first tick.
+ * 
+ * @author rb
+ *
+ */
+@PluginImplementation
+public class TestTimerImpl implements TestTimer {
+
+    /** Period of all timers in ms */
+    public static final long PERIOD = 20;
+
+    /**
+     * 
+     */
+    @InjectPlugin
+    public PluginConfiguration configuration;
+
+    /** How long a tick takes in ms */
+    private int duration;
+
+    /**
+     * 
+     */
+    @Init
+    public void init() {
+        this.duration = new PluginConfigurationUtil(this.configuration).getInt(TestTimerImpl.class, "tick.duration", Integer.valueOf(0));
+    }
+
+    /**
+     * @return .
+     */
+    @Timer(period = PERIOD, timerType = TimerType.RATE_BASED, overrunPolicy = OverrunPolicy.CATCH_UP)
+    public boolean catchUp() {
+        return tick();
+    }
+
+    /**
+     * @return .
+     */
+    @Timer(period = PERIOD, timerType = TimerType.RATE_BASED, overrunPolicy = OverrunPolicy.SKIP)
+    public boolean skip() {
+        return tick();
+    }
+
+    /**
+     * @return .
+     */
+    @Timer(period = PERIOD, timerType = TimerType.RATE_BASED, overrunPolicy = OverrunPolicy.COALESCE)
+    public boolean coalesce() {
+        return tick();
+    }
+
+    /**
+     * @return True if the timer should be cancelled.
+     */
+    private boolean tick() {
+        if (this.duration <= 0) return true;
+
+        try {
+            Thread.sleep(this.duration);
+        } catch (InterruptedException e) {
+            return true;
+        }
+
+        return false;
+    }
+}